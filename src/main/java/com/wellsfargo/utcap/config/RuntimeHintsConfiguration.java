@@ -0,0 +1,58 @@
+package com.wellsfargo.utcap.config;
+
+import com.wellsfargo.utcap.dto.BranchPage;
+import com.wellsfargo.utcap.dto.GitOperationRequest;
+import com.wellsfargo.utcap.model.AdmissionProperties;
+import com.wellsfargo.utcap.model.BranchIndexProperties;
+import com.wellsfargo.utcap.model.FeedListProperties;
+import com.wellsfargo.utcap.model.GitWriteProperties;
+import com.wellsfargo.utcap.model.GithubApiProperties;
+import com.wellsfargo.utcap.model.GithubClientProperties;
+import com.wellsfargo.utcap.model.IdempotencyProperties;
+import com.wellsfargo.utcap.model.MirrorProperties;
+import com.wellsfargo.utcap.model.PrewarmProperties;
+import com.wellsfargo.utcap.model.TraceProperties;
+import com.wellsfargo.utcap.trace.SpanRecord;
+import com.wellsfargo.utcap.trace.Trace;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+/**
+ * AOT / native-image hints for types bound reflectively at runtime:
+ * the configuration properties classes, the /ghe/operation request body and the
+ * types Jackson serializes in responses (branch search pages, trace waterfalls).
+ * Only consulted by the fast-startup build (-PfastStartup); a plain JVM run ignores them.
+ */
+@Configuration(proxyBeanMethods = false)
+@RegisterReflectionForBinding({
+        GithubClientProperties.class,
+        GithubApiProperties.class,
+        GitWriteProperties.class,
+        AdmissionProperties.class,
+        BranchIndexProperties.class,
+        FeedListProperties.class,
+        IdempotencyProperties.class,
+        MirrorProperties.class,
+        PrewarmProperties.class,
+        TraceProperties.class,
+        GitOperationRequest.class,
+        BranchPage.class,
+        Trace.class,
+        SpanRecord.class
+})
+@ImportRuntimeHints(RuntimeHintsConfiguration.ResourceHints.class)
+public class RuntimeHintsConfiguration {
+
+    /**
+     * Keeps application.properties (at the classpath root) in the native image.
+     */
+    static class ResourceHints implements RuntimeHintsRegistrar {
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            hints.resources().registerPattern("application.properties");
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.wellsfargo.utcap.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds cacheable JSON responses for endpoints the UI polls.
+ * The body gets a strong ETag (SHA-256 of the serialised JSON); a matching If-None-Match
+ * yields 304 with no body, and large bodies are gzipped when the client accepts it.
+ * The gzipped representation carries its own ETag ("-gzip" suffix), but either form
+ * validates against the same content.
+ */
+final class ConditionalJsonResponse {
+
+    // Bodies smaller than this are sent uncompressed; gzip overhead outweighs the savings.
+    private static final int GZIP_MIN_BYTES = 1024;
+    private static final String GZIP_SUFFIX = "-gzip";
+    // Per-session data: the browser may keep it, but must revalidate on every poll.
+    private static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ConditionalJsonResponse() {
+    }
+
+    /**
+     * Serialises the body once and returns either 304 or 200 with ETag, Cache-Control and optional gzip.
+     */
+    static ResponseEntity<?> of(JsonNode body, HttpServletRequest request) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(body);
+        String tag = contentTag(json);
+        boolean gzip = json.length >= GZIP_MIN_BYTES && acceptsGzip(request);
+        String etag = "\"" + tag + (gzip ? GZIP_SUFFIX : "") + "\"";
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), tag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CACHE_CONTROL)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CACHE_CONTROL)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzip(json));
+        }
+        return builder.body(json);
+    }
+
+    /**
+     * If-None-Match uses weak comparison, so W/ prefixes and our gzip suffix are ignored.
+     */
+    private static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*")) {
+                return true;
+            }
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            if (value.endsWith(GZIP_SUFFIX)) {
+                value = value.substring(0, value.length() - GZIP_SUFFIX.length());
+            }
+            if (value.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    private static String contentTag(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(json);
+        }
+        return out.toByteArray();
+    }
+}
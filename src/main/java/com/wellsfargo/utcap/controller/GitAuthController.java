@@ -1,6 +1,8 @@
 package com.wellsfargo.utcap.controller;
 
 import com.wellsfargo.utcap.model.GithubClientProperties;
+import com.wellsfargo.utcap.service.PrewarmService;
+import com.wellsfargo.utcap.trace.TraceContext;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
@@ -24,10 +26,12 @@ public class GitAuthController {
 
     private static final Logger log = LoggerFactory.getLogger(GitAuthController.class);
     private final GithubClientProperties githubClientProperties;
+    private final PrewarmService prewarmService;
 
     // Inject GitHub client properties from configuration
-    public GitAuthController(GithubClientProperties githubClientProperties) {
+    public GitAuthController(GithubClientProperties githubClientProperties, PrewarmService prewarmService) {
         this.githubClientProperties = githubClientProperties;
+        this.prewarmService = prewarmService;
     }
 
     /**
@@ -57,7 +61,8 @@ public class GitAuthController {
 
     /**
      * Handles the GitHub callback after user authorization.
-     * Exchanges the provided code for an access token and stores it in the session.
+     * Exchanges the provided code for an access token, stores it in the session
+     * and starts prewarming the repository and branch listings.
      *
      * @param code     the code provided by GitHub
      * @param state    the state parameter to validate the request
@@ -83,6 +88,8 @@ public class GitAuthController {
 
         // Store the access token in session for future API calls
         session.setAttribute("GHE_ACCESS_TOKEN", accessToken);
+        // Start fetching what the integration page asks for first, while the browser follows the redirect
+        prewarmService.prewarm(accessToken);
         log.info("before redirect");
         response.addHeader("X-REQUEST-ID", UUID.randomUUID().toString());
         // Note: Explicit cookie setting has been removed per internal requirements
@@ -112,7 +119,7 @@ public class GitAuthController {
         org.springframework.http.HttpHeaders headers = new org.springframework.http.HttpHeaders();
         headers.setContentType(org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED);
         headers.add("X-REQUEST-ID", UUID.randomUUID().toString());
-        headers.add("X-CORRELATION-ID", UUID.randomUUID().toString());
+        headers.add("X-CORRELATION-ID", TraceContext.correlationId());
         headers.add("X-CLIENT-ID", "UTCAP");
 
         org.springframework.http.HttpEntity<org.springframework.util.MultiValueMap<String, String>> requestEntity =
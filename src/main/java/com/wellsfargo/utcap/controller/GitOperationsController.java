@@ -3,7 +3,18 @@ package com.wellsfargo.utcap.controller;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wellsfargo.utcap.dto.GitOperationRequest;
+import com.wellsfargo.utcap.model.GithubApiProperties;
+import com.wellsfargo.utcap.model.MirrorProperties;
+import com.wellsfargo.utcap.service.AdmissionControlService;
+import com.wellsfargo.utcap.service.BranchIndexService;
+import com.wellsfargo.utcap.service.FeedListAggregator;
+import com.wellsfargo.utcap.service.IdempotencyService;
+import com.wellsfargo.utcap.service.LocalMirrorService;
 import com.wellsfargo.utcap.service.PathConstructorService;
+import com.wellsfargo.utcap.service.PathLockService;
+import com.wellsfargo.utcap.service.ShaRetryService;
+import com.wellsfargo.utcap.trace.Span;
+import com.wellsfargo.utcap.trace.TraceContext;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,7 +26,11 @@ import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
 
 /**
  * Controller for handling Git operations.
@@ -25,28 +40,100 @@ import java.util.UUID;
 public class GitOperationsController {
 
     private static final Logger log = LoggerFactory.getLogger(GitOperationsController.class);
-    private static final String GHE_API_BASE = "https://api.github.com/";
+    private static final Set<String> OPERATIONS =
+            Set.of("createBranch", "pushFile", "updateFile", "addFile", "mergeBranch", "pushMirror", "discardMirror");
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Autowired
     private PathConstructorService pathConstructorService;
 
+    @Autowired
+    private PathLockService pathLockService;
+
+    @Autowired
+    private FeedListAggregator feedListAggregator;
+
+    @Autowired
+    private BranchIndexService branchIndexService;
+
+    @Autowired
+    private ShaRetryService shaRetryService;
+
+    @Autowired
+    private GithubApiProperties githubApiProperties;
+
+    @Autowired
+    private LocalMirrorService localMirrorService;
+
+    @Autowired
+    private MirrorProperties mirrorProperties;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
     /**
      * Endpoint to perform Git operations based on the operation type specified in the request.
      * For file operations, the request should include: sor, feedName, fileType.
+     * With backend "mirror" the operation is applied to a local JGit mirror instead of the Contents API,
+     * and the extra operation "pushMirror" pushes the caller's accumulated commits in one git push, while
+     * "discardMirror" drops the caller's unpushed commits on newBranch (or on every branch when it is absent).
+     *
+     * An optional Idempotency-Key header makes retries of the same request return the first result
+     * instead of running the operation again; a duplicate of a request still in flight waits no longer
+     * than the bulkhead queue timeout. Each operation type runs in its own bulkhead and is answered with
+     * 503 and Retry-After when that bulkhead is saturated. feeds.lst registrations, structure detection
+     * included, run in a separate fixed-size bulkhead, as FeedListAggregator holds each one for its batch.
      *
-     * @param request GitOperationRequest payload containing details of the Git operation.
-     * @param session HttpSession to obtain the stored access token.
+     * @param request        GitOperationRequest payload containing details of the Git operation.
+     * @param idempotencyKey optional client-chosen key identifying this logical request.
+     * @param session        HttpSession to obtain the stored access token.
      * @return ResponseEntity with the result of the operation or an error message.
      */
     @PostMapping("/operation")
-    public ResponseEntity<?> performOperation(@RequestBody GitOperationRequest request, HttpSession session) {
+    public ResponseEntity<?> performOperation(@RequestBody GitOperationRequest request,
+                                              @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                              HttpSession session) {
         String accessToken = (String) session.getAttribute("GHE_ACCESS_TOKEN");
         if (accessToken == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Not authenticated");
         }
+        if (request.getOperation() == null || !OPERATIONS.contains(request.getOperation())) {
+            return ResponseEntity.badRequest().body("Invalid operation: " + request.getOperation());
+        }
+        String bulkhead = isFeedListRegistration(request)
+                ? AdmissionControlService.FEED_LIST_BULKHEAD : "operation." + request.getOperation();
+        Supplier<ResponseEntity<?>> operation =
+                () -> admissionControlService.call(bulkhead, () -> executeOperation(accessToken, request));
+        if (idempotencyKey == null) {
+            return operation.get();
+        }
+        // A rejected (503) attempt is not stored under the key, so the client's retry is admitted normally.
+        return idempotencyService.execute(accessToken, idempotencyKey, request,
+                admissionControlService.queueTimeoutMs(bulkhead), operation);
+    }
 
+    /**
+     * Whether the request is a feeds.lst registration handled by FeedListAggregator, which holds the
+     * request until its coalesced batch is written.
+     */
+    private boolean isFeedListRegistration(GitOperationRequest request) {
+        return "pushFile".equals(request.getOperation()) && "lst".equalsIgnoreCase(request.getFileType())
+                && !isMirrorBackend(request);
+    }
+
+    private ResponseEntity<?> executeOperation(String accessToken, GitOperationRequest request) {
         try {
+            if (isMirrorBackend(request)) {
+                String result = performOnMirror(accessToken, request);
+                if (result == null) {
+                    return ResponseEntity.badRequest().body("Invalid operation: " + request.getOperation());
+                }
+                log.info("performOperation: Mirror operation result: {}", result);
+                return ResponseEntity.ok(result);
+            }
             String result;
             switch (request.getOperation()) {
                 case "createBranch":
@@ -62,14 +149,24 @@ public class GitOperationsController {
 
                     log.info("performOperation: Received pushFile request for sor={}, feedName={}, fileType={}", sor, feedName, fileType);
                     // Determine SOR structure type.
-                    int structureType = pathConstructorService.determineStructureType(owner, repo, sor, accessToken);
+                    int structureType;
+                    try (Span span = TraceContext.span("structure detection")) {
+                        structureType = pathConstructorService.determineStructureType(owner, repo, sor, accessToken);
+                    }
                     log.info("performOperation: Determined structureType={}", structureType);
                     // Compute target file path.
                     String targetPath = pathConstructorService.constructTargetPath(sor, feedName, fileType, structureType);
                     log.info("performOperation: Computed target file path: {}", targetPath);
                     // Directly set the computed file path.
                     request.setFilePath(targetPath);
-                    result = pushFile(accessToken, request);
+                    if ("lst".equalsIgnoreCase(fileType)) {
+                        // feeds.lst is shared by every feed of the SOR: merge concurrent registrations into one commit.
+                        try (Span span = TraceContext.span("feeds.lst coalesced write")) {
+                            result = feedListAggregator.register(accessToken, request);
+                        }
+                    } else {
+                        result = pushFile(accessToken, request);
+                    }
                     break;
                 case "updateFile":
                     result = updateFile(accessToken, request);
@@ -85,6 +182,23 @@ public class GitOperationsController {
             }
             log.info("performOperation: Operation result: {}", result);
             return ResponseEntity.ok(result);
+        } catch (HttpClientErrorException ex) {
+            if (ShaRetryService.isShaConflict(ex)) {
+                log.error("performOperation: Write conflict persisted after retries", ex);
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body("Operation failed: " + ex.getMessage());
+            }
+            if (ex.getStatusCode() == HttpStatus.FORBIDDEN || ex.getStatusCode() == HttpStatus.NOT_FOUND) {
+                return ResponseEntity.status(ex.getStatusCode()).body("Operation failed: " + ex.getMessage());
+            }
+            log.error("performOperation: Operation failed", ex);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Operation failed: " + ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body("Operation failed: " + ex.getMessage());
+        } catch (IllegalStateException ex) {
+            log.warn("performOperation: Operation conflicted: {}", ex.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Operation failed: " + ex.getMessage());
         } catch (Exception ex) {
             log.error("performOperation: Operation failed", ex);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -92,6 +206,56 @@ public class GitOperationsController {
         }
     }
 
+    private boolean isMirrorBackend(GitOperationRequest request) {
+        String backend = request.getBackend() != null ? request.getBackend() : mirrorProperties.getDefaultBackend();
+        return "mirror".equalsIgnoreCase(backend);
+    }
+
+    /**
+     * Applies an operation to the local mirror of the repository.
+     * Commits stay local until a "pushMirror" operation pushes them or "discardMirror" drops them.
+     *
+     * @return the operation result, or null for an unsupported operation
+     */
+    private String performOnMirror(String accessToken, GitOperationRequest request) throws IOException {
+        String owner = request.getOwner();
+        String repo = request.getRepo();
+        switch (request.getOperation()) {
+            case "createBranch":
+                return localMirrorService.createBranch(accessToken, owner, repo, request.getNewBranch(), request.getBaseBranch());
+            case "pushFile":
+                String sor = request.getSor();
+                log.info("performOnMirror: Received pushFile request for sor={}, feedName={}, fileType={}",
+                        sor, request.getFeedName(), request.getFileType());
+                int structureType;
+                try (Span span = TraceContext.span("structure detection")) {
+                    List<String> entries = localMirrorService.listDirectory(accessToken, owner, repo, "src/batch/" + sor);
+                    structureType = pathConstructorService.structureTypeFromEntries(entries);
+                }
+                String targetPath = pathConstructorService.constructTargetPath(sor, request.getFeedName(),
+                        request.getFileType(), structureType);
+                try (Span span = TraceContext.span("write (mirror)")) {
+                    return localMirrorService.pushFile(accessToken, owner, repo, request.getNewBranch(), targetPath,
+                            request.getContent(), request.getCommitMessage(), "lst".equalsIgnoreCase(request.getFileType()));
+                }
+            case "updateFile":
+            case "addFile":
+                return localMirrorService.pushFile(accessToken, owner, repo, request.getNewBranch(), request.getFilePath(),
+                        request.getContent(), request.getCommitMessage(), false);
+            case "mergeBranch":
+                return localMirrorService.mergeBranch(accessToken, owner, repo, request.getBaseBranch(),
+                        request.getHeadBranch(), request.getCommitMessage());
+            case "pushMirror":
+                try (Span span = TraceContext.span("git push")) {
+                    return localMirrorService.push(accessToken, owner, repo);
+                }
+            case "discardMirror":
+                return localMirrorService.discard(accessToken, owner, repo, request.getNewBranch());
+            default:
+                return null;
+        }
+    }
+
     /**
      * Creates a new branch in the repository.
      * If the branch already exists, returns a message indicating so.
@@ -102,11 +266,11 @@ public class GitOperationsController {
         String newBranch = request.getNewBranch();
 
         // Check if branch already exists.
-        String branchUrl = GHE_API_BASE + "/repos/" + owner + "/" + repo + "/branches/" + newBranch;
+        String branchUrl = githubApiProperties.getBaseUrl() + "/repos/" + owner + "/" + repo + "/branches/" + newBranch;
         RestTemplate restTemplate = new RestTemplate();
         HttpHeaders headers = buildAuthHeaders(accessToken);
         HttpEntity<?> getEntity = new HttpEntity<>(headers);
-        try {
+        try (Span span = TraceContext.span("branch lookup")) {
             ResponseEntity<String> branchResponse = restTemplate.exchange(branchUrl, HttpMethod.GET, getEntity, String.class);
             if (branchResponse.getStatusCode() == HttpStatus.OK) {
                 log.info("createBranch: Branch {} already exists.", newBranch);
@@ -121,15 +285,19 @@ public class GitOperationsController {
         // Create branch.
         String defaultBranch = getDefaultBranch(accessToken, owner, repo);
         String baseSha = getBranchSha(accessToken, owner, repo, defaultBranch);
-        String url = GHE_API_BASE + "/repos/" + owner + "/" + repo + "/git/refs";
+        String url = githubApiProperties.getBaseUrl() + "/repos/" + owner + "/" + repo + "/git/refs";
         headers.setContentType(MediaType.APPLICATION_JSON);
         String payload = String.format(
                 "{\"ref\": \"refs/heads/%s\", \"sha\": \"%s\"}",
                 newBranch, baseSha
         );
         HttpEntity<String> entity = new HttpEntity<>(payload, headers);
-        ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
+        ResponseEntity<String> response;
+        try (Span span = TraceContext.span("create ref")) {
+            response = restTemplate.postForEntity(url, entity, String.class);
+        }
         log.info("createBranch: Create branch response: {}", response.getBody());
+        branchIndexService.branchCreated(owner, repo, newBranch);
         return response.getBody();
     }
 
@@ -138,24 +306,41 @@ public class GitOperationsController {
      * Checks if the file exists on GitHub (in the specified branch):
      * - If it exists, updates the file.
      * - If not, adds the file.
+     * Writers to the same (repo, branch, path) are serialised on this node, and a write that
+     * loses the SHA race to another node (409/422) re-fetches the SHA and tries again.
      */
     private String pushFile(String accessToken, GitOperationRequest request) throws IOException {
+        Lock lock = pathLockService.lockFor(request.getOwner(), request.getRepo(),
+                request.getNewBranch(), request.getFilePath());
+        long waitStarted = System.nanoTime();
+        lock.lock();
+        // Queueing behind another writer of this file is not GitHub time.
+        AdmissionControlService.excludeFromLatency(System.nanoTime() - waitStarted);
+        try {
+            return shaRetryService.run(request.getFilePath(), () -> pushFileOnce(accessToken, request));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Single attempt of pushFile: looks up the current SHA on the branch and writes against it.
+     */
+    private String pushFileOnce(String accessToken, GitOperationRequest request) throws IOException {
         String owner = request.getOwner();
         String repo = request.getRepo();
         String filePath = request.getFilePath();
         // Append branch query parameter.
-        String url = GHE_API_BASE + "/repos/" + owner + "/" + repo + "/contents/" + filePath + "?ref=" + request.getNewBranch();
+        String url = githubApiProperties.getBaseUrl() + "/repos/" + owner + "/" + repo + "/contents/" + filePath + "?ref=" + request.getNewBranch();
         RestTemplate restTemplate = new RestTemplate();
         HttpHeaders headers = buildAuthHeaders(accessToken);
         HttpEntity<?> entity = new HttpEntity<>(headers);
 
-        try {
+        String existingFileSha;
+        try (Span span = TraceContext.span("sha lookup")) {
             ResponseEntity<String> getResponse = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
             log.info("pushFile: GET response for file update: {}", getResponse.getBody());
-            String existingFileSha = extractShaFromResponse(getResponse.getBody());
-            request.setFileSha(existingFileSha);
-            log.info("pushFile: File exists. Proceeding with update. SHA: {}", existingFileSha);
-            return updateFile(accessToken, request);
+            existingFileSha = extractShaFromResponse(getResponse.getBody());
         } catch (HttpClientErrorException e) {
             if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
                 log.info("pushFile: File does not exist in branch {}. Proceeding with add.", request.getNewBranch());
@@ -164,6 +349,9 @@ public class GitOperationsController {
                 throw e;
             }
         }
+        request.setFileSha(existingFileSha);
+        log.info("pushFile: File exists. Proceeding with update. SHA: {}", existingFileSha);
+        return updateFile(accessToken, request);
     }
 
     /**
@@ -171,7 +359,7 @@ public class GitOperationsController {
      * Now includes the branch parameter.
      */
     private String updateFile(String accessToken, GitOperationRequest request) {
-        String url = GHE_API_BASE + "/repos/" + request.getOwner() + "/" + request.getRepo()
+        String url = githubApiProperties.getBaseUrl() + "/repos/" + request.getOwner() + "/" + request.getRepo()
                 + "/contents/" + request.getFilePath();
         RestTemplate restTemplate = new RestTemplate();
         HttpHeaders headers = buildAuthHeaders(accessToken);
@@ -181,7 +369,10 @@ public class GitOperationsController {
                 request.getCommitMessage(), request.getContent(), request.getFileSha(), request.getNewBranch()
         );
         HttpEntity<String> entity = new HttpEntity<>(payload, headers);
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.PUT, entity, String.class);
+        ResponseEntity<String> response;
+        try (Span span = TraceContext.span("write (update)")) {
+            response = restTemplate.exchange(url, HttpMethod.PUT, entity, String.class);
+        }
         log.info("updateFile: Update file response: {}", response.getBody());
         return response.getBody();
     }
@@ -191,7 +382,7 @@ public class GitOperationsController {
      * Now includes the branch parameter.
      */
     private String addFile(String accessToken, GitOperationRequest request) {
-        String url = GHE_API_BASE + "/repos/" + request.getOwner() + "/" + request.getRepo()
+        String url = githubApiProperties.getBaseUrl() + "/repos/" + request.getOwner() + "/" + request.getRepo()
                 + "/contents/" + request.getFilePath();
         RestTemplate restTemplate = new RestTemplate();
         HttpHeaders headers = buildAuthHeaders(accessToken);
@@ -201,7 +392,10 @@ public class GitOperationsController {
                 request.getCommitMessage(), request.getContent(), request.getNewBranch()
         );
         HttpEntity<String> entity = new HttpEntity<>(payload, headers);
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.PUT, entity, String.class);
+        ResponseEntity<String> response;
+        try (Span span = TraceContext.span("write (add)")) {
+            response = restTemplate.exchange(url, HttpMethod.PUT, entity, String.class);
+        }
         log.info("addFile: Add file response: {}", response.getBody());
         return response.getBody();
     }
@@ -210,7 +404,7 @@ public class GitOperationsController {
      * Merges two branches in the repository.
      */
     private String mergeBranch(String accessToken, GitOperationRequest request) {
-        String url = GHE_API_BASE + "/repos/" + request.getOwner() + "/" + request.getRepo() + "/merges";
+        String url = githubApiProperties.getBaseUrl() + "/repos/" + request.getOwner() + "/" + request.getRepo() + "/merges";
         RestTemplate restTemplate = new RestTemplate();
         HttpHeaders headers = buildAuthHeaders(accessToken);
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -219,7 +413,10 @@ public class GitOperationsController {
                 request.getBaseBranch(), request.getHeadBranch(), request.getCommitMessage()
         );
         HttpEntity<String> entity = new HttpEntity<>(payload, headers);
-        ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
+        ResponseEntity<String> response;
+        try (Span span = TraceContext.span("merge")) {
+            response = restTemplate.postForEntity(url, entity, String.class);
+        }
         log.info("mergeBranch: Merge branch response: {}", response.getBody());
         return response.getBody();
     }
@@ -228,11 +425,14 @@ public class GitOperationsController {
      * Retrieves the default branch for a given repository.
      */
     private String getDefaultBranch(String accessToken, String owner, String repo) throws IOException {
-        String url = GHE_API_BASE + "/repos/" + owner + "/" + repo;
+        String url = githubApiProperties.getBaseUrl() + "/repos/" + owner + "/" + repo;
         RestTemplate restTemplate = new RestTemplate();
         HttpHeaders headers = buildAuthHeaders(accessToken);
         HttpEntity<?> entity = new HttpEntity<>(headers);
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+        ResponseEntity<String> response;
+        try (Span span = TraceContext.span("default branch lookup")) {
+            response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+        }
         JsonNode root = objectMapper.readTree(response.getBody());
         String defaultBranch = root.get("default_branch").asText();
         log.info("getDefaultBranch: Default branch for {}/{}: {}", owner, repo, defaultBranch);
@@ -243,11 +443,14 @@ public class GitOperationsController {
      * Retrieves the latest commit SHA for a given branch.
      */
     private String getBranchSha(String accessToken, String owner, String repo, String branchName) throws IOException {
-        String url = GHE_API_BASE + "/repos/" + owner + "/" + repo + "/branches/" + branchName;
+        String url = githubApiProperties.getBaseUrl() + "/repos/" + owner + "/" + repo + "/branches/" + branchName;
         RestTemplate restTemplate = new RestTemplate();
         HttpHeaders headers = buildAuthHeaders(accessToken);
         HttpEntity<?> entity = new HttpEntity<>(headers);
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+        ResponseEntity<String> response;
+        try (Span span = TraceContext.span("base sha lookup")) {
+            response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+        }
         JsonNode root = objectMapper.readTree(response.getBody());
         String sha = root.get("commit").get("sha").asText();
         log.info("getBranchSha: SHA for branch {} in {}/{}: {}", branchName, owner, repo, sha);
@@ -283,7 +486,7 @@ public class GitOperationsController {
         headers.setAccept(Collections.singletonList(
                 org.springframework.http.MediaType.parseMediaType("application/vnd.github.v3+json")));
         headers.add("X-REQUEST-ID", UUID.randomUUID().toString());
-        headers.add("X-CORRELATION-ID", UUID.randomUUID().toString());
+        headers.add("X-CORRELATION-ID", TraceContext.correlationId());
         headers.add("X-CLIENT-ID", "UTCAP");
         return headers;
     }
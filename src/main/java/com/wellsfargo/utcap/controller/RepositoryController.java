@@ -1,9 +1,12 @@
 package com.wellsfargo.utcap.controller;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.wellsfargo.utcap.dto.BranchPage;
+import com.wellsfargo.utcap.service.AdmissionControlService;
+import com.wellsfargo.utcap.service.BranchIndexService;
+import com.wellsfargo.utcap.service.PrewarmService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,64 +15,56 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
-
-import java.util.Collections;
-import java.util.UUID;
+import org.springframework.web.client.HttpClientErrorException;
 
 /**
  * Controller for fetching GitHub repositories and branches.
  * Provides endpoints to list repositories (with push access) and branches for a specific repository.
+ * The GitHub calls are delegated to a RepositoryBackend (REST or GraphQL, chosen by configuration),
+ * through PrewarmService so the first calls after login can be served from prefetched results.
+ * Responses carry a strong ETag so UI polling gets a bodiless 304 when nothing has changed.
+ * Each endpoint runs in its own bulkhead and answers 503 with Retry-After when GitHub is too slow to keep up.
  */
 @RestController
 @RequestMapping("/ghe")
 public class RepositoryController {
 
     private static final Logger log = LoggerFactory.getLogger(RepositoryController.class);
-    private static final String GHE_API_BASE = "https://api.github.com/";
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PrewarmService prewarmService;
+    private final BranchIndexService branchIndexService;
+    private final AdmissionControlService admissionControlService;
+
+    public RepositoryController(PrewarmService prewarmService, BranchIndexService branchIndexService,
+                                AdmissionControlService admissionControlService) {
+        this.prewarmService = prewarmService;
+        this.branchIndexService = branchIndexService;
+        this.admissionControlService = admissionControlService;
+    }
 
     /**
      * Retrieves the list of repositories where the authenticated user has push access.
      *
      * @param session HttpSession to obtain the stored access token
-     * @return ResponseEntity with filtered repository list or error status
+     * @param request HttpServletRequest carrying If-None-Match and Accept-Encoding
+     * @return ResponseEntity with filtered repository list, 304 if unchanged, or error status
      */
     @GetMapping("/repositories")
-    public ResponseEntity<?> getRepositories(HttpSession session) {
+    public ResponseEntity<?> getRepositories(HttpSession session, HttpServletRequest request) {
         String accessToken = (String) session.getAttribute("GHE_ACCESS_TOKEN");
         if (accessToken == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Not authenticated");
         }
 
-        RestTemplate restTemplate = new RestTemplate();
-        String url = GHE_API_BASE + "/user/repos";
-        HttpHeaders headers = buildAuthHeaders(accessToken);
-        HttpEntity<?> entity = new HttpEntity<>(headers);
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-        String responseBody = response.getBody();
-        log.info("Repositories API response status: {}", response.getStatusCode());
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        try {
-            JsonNode rootArray = objectMapper.readTree(responseBody);
-            ArrayNode filteredRepos = objectMapper.createArrayNode();
-            // Filter repositories where the user has push permissions
-            if (rootArray.isArray()) {
-                for (JsonNode repoNode : rootArray) {
-                    JsonNode permissions = repoNode.get("permissions");
-                    if (permissions != null && permissions.get("push").asBoolean()) {
-                        ObjectNode simpleRepo = objectMapper.createObjectNode();
-                        simpleRepo.put("name", repoNode.get("name").asText());
-                        simpleRepo.put("owner", repoNode.get("owner").get("login").asText());
-                        filteredRepos.add(simpleRepo);
-                    }
-                }
+        return admissionControlService.call("repositories", () -> {
+            try {
+                ArrayNode filteredRepos = prewarmService.listRepositories(accessToken);
+                return ConditionalJsonResponse.of(filteredRepos, request);
+            } catch (Exception e) {
+                log.error("Error parsing repositories", e);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error processing repositories");
             }
-            return ResponseEntity.ok(filteredRepos);
-        } catch (Exception e) {
-            log.error("Error parsing repositories", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error processing repositories");
-        }
+        });
     }
 
     /**
@@ -78,55 +73,78 @@ public class RepositoryController {
      * @param owner   the repository owner's username
      * @param repo    the repository name
      * @param session HttpSession to obtain the stored access token
-     * @return ResponseEntity with branch names or error status
+     * @param request HttpServletRequest carrying If-None-Match and Accept-Encoding
+     * @return ResponseEntity with branch names, 304 if unchanged, or error status
      */
     @GetMapping("/branches")
     public ResponseEntity<?> getBranches(@RequestParam("owner") String owner,
                                          @RequestParam("repo") String repo,
-                                         HttpSession session) {
+                                         HttpSession session,
+                                         HttpServletRequest request) {
         String accessToken = (String) session.getAttribute("GHE_ACCESS_TOKEN");
         if (accessToken == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Not authenticated");
         }
 
-        RestTemplate restTemplate = new RestTemplate();
-        String url = GHE_API_BASE + "/repos/" + owner + "/" + repo + "/branches";
-        HttpHeaders headers = buildAuthHeaders(accessToken);
-        HttpEntity<?> entity = new HttpEntity<>(headers);
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-        String responseBody = response.getBody();
-        log.info("Branches API response: {}", responseBody);
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        try {
-            JsonNode root = objectMapper.readTree(responseBody);
-            ArrayNode branchNames = objectMapper.createArrayNode();
-            // Iterate through the array and add each branch name
-            if (root.isArray()) {
-                for (JsonNode branch : root) {
-                    branchNames.add(branch.get("name").asText());
-                }
+        return admissionControlService.call("branches", () -> {
+            try {
+                ArrayNode branchNames = prewarmService.listBranches(accessToken, owner, repo);
+                return ConditionalJsonResponse.of(branchNames, request);
+            } catch (Exception e) {
+                log.error("Error parsing branches", e);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error processing branches");
             }
-            return ResponseEntity.ok(branchNames);
-        } catch (Exception e) {
-            log.error("Error parsing branches", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error processing branches");
-        }
+        });
     }
 
     /**
-     * Builds and returns HTTP headers with authentication and required internal headers.
+     * Searches the branches of a repository against the in-memory branch index.
+     * Returns {"items": [...], "nextCursor": "..."}; pass nextCursor back to get the following page.
      *
-     * @param accessToken the GitHub access token
-     * @return HttpHeaders including authorization and internal header values
+     * @param owner   the repository owner's username
+     * @param repo    the repository name
+     * @param q       text to match, case-insensitively (empty matches every branch)
+     * @param mode    "prefix" (default) or "substring"
+     * @param cursor  nextCursor from the previous page, omitted for the first page
+     * @param limit   maximum number of branch names to return
+     * @param session HttpSession to obtain the stored access token
+     * @param request HttpServletRequest carrying If-None-Match and Accept-Encoding
+     * @return ResponseEntity with one page of matching branch names or error status
      */
-    private HttpHeaders buildAuthHeaders(String accessToken) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("Authorization", "token " + accessToken);
-        headers.setAccept(Collections.singletonList(MediaType.parseMediaType("application/vnd.github.v3+json")));
-        headers.add("X-REQUEST-ID", UUID.randomUUID().toString());
-        headers.add("X-CORRELATION-ID", UUID.randomUUID().toString());
-        headers.add("X-CLIENT-ID", "UTCAP");
-        return headers;
+    @GetMapping("/branches/search")
+    public ResponseEntity<?> searchBranches(@RequestParam("owner") String owner,
+                                            @RequestParam("repo") String repo,
+                                            @RequestParam(value = "q", defaultValue = "") String q,
+                                            @RequestParam(value = "mode", defaultValue = "prefix") String mode,
+                                            @RequestParam(value = "cursor", required = false) String cursor,
+                                            @RequestParam(value = "limit", required = false) Integer limit,
+                                            HttpSession session,
+                                            HttpServletRequest request) {
+        String accessToken = (String) session.getAttribute("GHE_ACCESS_TOKEN");
+        if (accessToken == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Not authenticated");
+        }
+        if (!mode.equals("prefix") && !mode.equals("substring")) {
+            return ResponseEntity.badRequest().body("Invalid mode: " + mode);
+        }
+
+        return admissionControlService.call("branch-search", () -> {
+            try {
+                BranchPage page = branchIndexService.search(accessToken, owner, repo, q,
+                        mode.equals("substring"), cursor, limit);
+                return ConditionalJsonResponse.of(objectMapper.valueToTree(page), request);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body("Invalid cursor");
+            } catch (HttpClientErrorException e) {
+                if (e.getStatusCode() == HttpStatus.NOT_FOUND || e.getStatusCode() == HttpStatus.FORBIDDEN) {
+                    return ResponseEntity.status(e.getStatusCode()).body("Repository not accessible");
+                }
+                log.error("Error searching branches", e);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error searching branches");
+            } catch (Exception e) {
+                log.error("Error searching branches", e);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error searching branches");
+            }
+        });
     }
 }
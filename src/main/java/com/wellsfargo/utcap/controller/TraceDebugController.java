@@ -0,0 +1,47 @@
+package com.wellsfargo.utcap.controller;
+
+import com.wellsfargo.utcap.model.TraceProperties;
+import com.wellsfargo.utcap.trace.TraceRecorder;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Debug endpoint exposing recent request traces: correlation ID, total time and a waterfall of spans
+ * (structure detection, SHA lookup, write, ...) for each /ghe request.
+ */
+@RestController
+@RequestMapping("/ghe/debug")
+public class TraceDebugController {
+
+    private final TraceRecorder traceRecorder;
+    private final TraceProperties traceProperties;
+
+    public TraceDebugController(TraceRecorder traceRecorder, TraceProperties traceProperties) {
+        this.traceRecorder = traceRecorder;
+        this.traceProperties = traceProperties;
+    }
+
+    /**
+     * Returns the most recent request traces, newest first.
+     *
+     * @param limit   maximum number of traces to return
+     * @param session HttpSession used to require an authenticated caller
+     * @return ResponseEntity with the traces or error status
+     */
+    @GetMapping("/traces")
+    public ResponseEntity<?> getTraces(@RequestParam(value = "limit", defaultValue = "20") int limit,
+                                       HttpSession session) {
+        if (!traceProperties.isDebugEndpointEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (session.getAttribute("GHE_ACCESS_TOKEN") == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Not authenticated");
+        }
+        return ResponseEntity.ok(traceRecorder.recent(Math.max(1, limit)));
+    }
+}
@@ -0,0 +1,24 @@
+package com.wellsfargo.utcap.dto;
+
+import java.util.List;
+
+/**
+ * One page of branch search results. nextCursor is null on the last page.
+ */
+public class BranchPage {
+    private final List<String> items;
+    private final String nextCursor;
+
+    public BranchPage(List<String> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<String> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -26,6 +26,9 @@ public class GitOperationRequest {
     private String feedName;  // The feed (table) name
     private String fileType;  // The file type (e.g., "json", "sql", "scripts", "metadata", "hql", "ddl")
 
+    // Write backend: "api" (Contents API) or "mirror" (local JGit mirror); defaults to github.mirror.default-backend
+    private String backend;
+
     // Getters and setters for all fields
 
     public String getOperation() {
@@ -132,4 +135,11 @@ public class GitOperationRequest {
     public void setFileType(String fileType) {
         this.fileType = fileType;
     }
+
+    public String getBackend() {
+        return backend;
+    }
+    public void setBackend(String backend) {
+        this.backend = backend;
+    }
 }
@@ -0,0 +1,131 @@
+package com.wellsfargo.utcap.model;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for the adaptive bulkheads in front of GitHub-bound /ghe endpoints.
+ * Every bulkhead (one per endpoint / operation type) starts at initialLimit concurrent calls and adapts
+ * between minLimit and maxLimit: +1 per window of calls faster than latencyTargetMs, times backoffRatio
+ * when a call is slower or fails. feeds.lst registrations have their own fixed-size bulkhead, since their
+ * latency is mostly the coalescing window rather than GitHub's.
+ */
+@Component
+@ConfigurationProperties(prefix = "github.admission")
+public class AdmissionProperties {
+    private boolean enabled = true;
+    private int initialLimit = 20;
+    private int minLimit = 2;
+    private int maxLimit = 100;
+    private long latencyTargetMs = 2000;
+    private double backoffRatio = 0.8;
+    // Callers allowed to wait for a slot; beyond that requests are rejected at once.
+    private int maxQueue = 20;
+    // How long a queued caller waits for a slot before it is rejected.
+    private long queueTimeoutMs = 500;
+    // Retry-After sent with the 503 of a rejected request.
+    private int retryAfterSeconds = 2;
+    // Fixed concurrency of feeds.lst registrations. Each holds its slot until its coalesced batch is
+    // written, so this also caps the registrations FeedListAggregator can fold into one round of commits.
+    private int feedListLimit = 50;
+    // feeds.lst registrations allowed to wait for a slot; a burst this size is folded into a few batches.
+    private int feedListMaxQueue = 200;
+    // How long a queued feeds.lst registration waits; it covers a few coalesce windows and their writes.
+    private long feedListQueueTimeoutMs = 5000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public long getLatencyTargetMs() {
+        return latencyTargetMs;
+    }
+
+    public void setLatencyTargetMs(long latencyTargetMs) {
+        this.latencyTargetMs = latencyTargetMs;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    public void setMaxQueue(int maxQueue) {
+        this.maxQueue = maxQueue;
+    }
+
+    public long getQueueTimeoutMs() {
+        return queueTimeoutMs;
+    }
+
+    public void setQueueTimeoutMs(long queueTimeoutMs) {
+        this.queueTimeoutMs = queueTimeoutMs;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getFeedListLimit() {
+        return feedListLimit;
+    }
+
+    public void setFeedListLimit(int feedListLimit) {
+        this.feedListLimit = feedListLimit;
+    }
+
+    public int getFeedListMaxQueue() {
+        return feedListMaxQueue;
+    }
+
+    public void setFeedListMaxQueue(int feedListMaxQueue) {
+        this.feedListMaxQueue = feedListMaxQueue;
+    }
+
+    public long getFeedListQueueTimeoutMs() {
+        return feedListQueueTimeoutMs;
+    }
+
+    public void setFeedListQueueTimeoutMs(long feedListQueueTimeoutMs) {
+        this.feedListQueueTimeoutMs = feedListQueueTimeoutMs;
+    }
+}
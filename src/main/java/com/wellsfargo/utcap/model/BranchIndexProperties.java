@@ -0,0 +1,52 @@
+package com.wellsfargo.utcap.model;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for the in-memory branch index behind /ghe/branches/search.
+ */
+@Component
+@ConfigurationProperties(prefix = "github.branch-index")
+public class BranchIndexProperties {
+    // Branches created or deleted through this service are applied to the index as they happen.
+    // An index older than this is still served while a full reload in the background reconciles
+    // it with changes made outside the service.
+    private long reconcileSeconds = 1800;
+    // Upper bound on repositories indexed at once; least recently searched are dropped first.
+    private int maxRepositories = 200;
+    private int defaultLimit = 50;
+    private int maxLimit = 500;
+
+    public long getReconcileSeconds() {
+        return reconcileSeconds;
+    }
+
+    public void setReconcileSeconds(long reconcileSeconds) {
+        this.reconcileSeconds = reconcileSeconds;
+    }
+
+    public int getMaxRepositories() {
+        return maxRepositories;
+    }
+
+    public void setMaxRepositories(int maxRepositories) {
+        this.maxRepositories = maxRepositories;
+    }
+
+    public int getDefaultLimit() {
+        return defaultLimit;
+    }
+
+    public void setDefaultLimit(int defaultLimit) {
+        this.defaultLimit = defaultLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+}
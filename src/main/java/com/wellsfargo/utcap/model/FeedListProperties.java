@@ -0,0 +1,52 @@
+package com.wellsfargo.utcap.model;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for coalescing feed registrations into the shared config/feeds.lst of a SOR.
+ */
+@Component
+@ConfigurationProperties(prefix = "github.feeds")
+public class FeedListProperties {
+    // How long registrations for the same feeds.lst are collected before one commit is written.
+    private long coalesceWindowMs = 200;
+    // A batch is flushed early once it holds this many registrations.
+    private int maxBatchSize = 500;
+    // Threads that perform the merged writes; one repository branch uses at most one of them at a time.
+    private int flushThreads = 8;
+    // Longest a registering request waits for its batch's commit before failing.
+    private long maxWaitMs = 30000;
+
+    public long getCoalesceWindowMs() {
+        return coalesceWindowMs;
+    }
+
+    public void setCoalesceWindowMs(long coalesceWindowMs) {
+        this.coalesceWindowMs = coalesceWindowMs;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getFlushThreads() {
+        return flushThreads;
+    }
+
+    public void setFlushThreads(int flushThreads) {
+        this.flushThreads = flushThreads;
+    }
+
+    public long getMaxWaitMs() {
+        return maxWaitMs;
+    }
+
+    public void setMaxWaitMs(long maxWaitMs) {
+        this.maxWaitMs = maxWaitMs;
+    }
+}
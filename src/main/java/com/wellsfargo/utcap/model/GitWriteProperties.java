@@ -0,0 +1,42 @@
+package com.wellsfargo.utcap.model;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for the file write path (pushFile / updateFile / addFile).
+ */
+@Component
+@ConfigurationProperties(prefix = "github.write")
+public class GitWriteProperties {
+    // Number of lock stripes shared by all (repo, branch, path) keys on this node.
+    private int lockStripes = 64;
+    // How many times a write is retried after the file SHA has moved underneath it.
+    private int maxShaRetries = 3;
+    // Base delay between SHA retries; grows linearly with the attempt number.
+    private long retryBackoffMs = 50;
+
+    public int getLockStripes() {
+        return lockStripes;
+    }
+
+    public void setLockStripes(int lockStripes) {
+        this.lockStripes = lockStripes;
+    }
+
+    public int getMaxShaRetries() {
+        return maxShaRetries;
+    }
+
+    public void setMaxShaRetries(int maxShaRetries) {
+        this.maxShaRetries = maxShaRetries;
+    }
+
+    public long getRetryBackoffMs() {
+        return retryBackoffMs;
+    }
+
+    public void setRetryBackoffMs(long retryBackoffMs) {
+        this.retryBackoffMs = retryBackoffMs;
+    }
+}
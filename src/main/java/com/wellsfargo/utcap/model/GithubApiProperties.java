@@ -0,0 +1,70 @@
+package com.wellsfargo.utcap.model;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Endpoints and backend selection for GitHub API access.
+ */
+@Component
+@ConfigurationProperties(prefix = "github.api")
+public class GithubApiProperties {
+    private String baseUrl = "https://api.github.com/";
+    private String graphqlUrl = "https://api.github.com/graphql";
+    // Backend used by RepositoryController: "rest" or "graphql".
+    private String repositoryBackend = "rest";
+    // Page size for cursor-paginated GraphQL connections (GitHub caps this at 100).
+    private int graphqlPageSize = 100;
+    // Branches fetched per repository inside the GraphQL repository query (0 = list branches separately).
+    private int graphqlRepositoryRefs = 100;
+    // How long branches returned with the repository listing are reused for the following branch listing.
+    private long graphqlRefsTtlSeconds = 30;
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public String getGraphqlUrl() {
+        return graphqlUrl;
+    }
+
+    public void setGraphqlUrl(String graphqlUrl) {
+        this.graphqlUrl = graphqlUrl;
+    }
+
+    public String getRepositoryBackend() {
+        return repositoryBackend;
+    }
+
+    public void setRepositoryBackend(String repositoryBackend) {
+        this.repositoryBackend = repositoryBackend;
+    }
+
+    public int getGraphqlPageSize() {
+        return graphqlPageSize;
+    }
+
+    public void setGraphqlPageSize(int graphqlPageSize) {
+        this.graphqlPageSize = graphqlPageSize;
+    }
+
+    public int getGraphqlRepositoryRefs() {
+        return graphqlRepositoryRefs;
+    }
+
+    public void setGraphqlRepositoryRefs(int graphqlRepositoryRefs) {
+        this.graphqlRepositoryRefs = graphqlRepositoryRefs;
+    }
+
+    public long getGraphqlRefsTtlSeconds() {
+        return graphqlRefsTtlSeconds;
+    }
+
+    public void setGraphqlRefsTtlSeconds(long graphqlRefsTtlSeconds) {
+        this.graphqlRefsTtlSeconds = graphqlRefsTtlSeconds;
+    }
+}
@@ -0,0 +1,42 @@
+package com.wellsfargo.utcap.model;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for the Idempotency-Key result store of /ghe/operation.
+ */
+@Component
+@ConfigurationProperties(prefix = "github.idempotency")
+public class IdempotencyProperties {
+    // How long a key is remembered, counted from its first use.
+    private long ttlSeconds = 600;
+    // Upper bound on remembered keys; the oldest completed ones are dropped first, in-flight ones are kept.
+    private int maxEntries = 10000;
+    // Longest a duplicate waits for the in-flight first execution before getting 409; /ghe/operation caps it at the bulkhead queue timeout.
+    private long inFlightWaitSeconds = 60;
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getInFlightWaitSeconds() {
+        return inFlightWaitSeconds;
+    }
+
+    public void setInFlightWaitSeconds(long inFlightWaitSeconds) {
+        this.inFlightWaitSeconds = inFlightWaitSeconds;
+    }
+}
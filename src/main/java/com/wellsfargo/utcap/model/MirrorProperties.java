@@ -0,0 +1,80 @@
+package com.wellsfargo.utcap.model;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for the local git mirror write backend.
+ */
+@Component
+@ConfigurationProperties(prefix = "github.mirror")
+public class MirrorProperties {
+    // Backend used by /ghe/operation when the request does not name one: "api" or "mirror".
+    private String defaultBackend = "api";
+    // Directory holding one bare mirror per repository.
+    private String baseDir = System.getProperty("java.io.tmpdir") + "/ghe-mirrors";
+    // Remote of each mirror; {owner} and {repo} are substituted. file:// URLs work for local testing.
+    private String remoteUrlTemplate = "https://github.com/{owner}/{repo}.git";
+    // A mirror without unpushed commits is re-fetched when its last fetch is older than this.
+    private long fetchIntervalSeconds = 30;
+    // How often a push GitHub rejects is retried after merging the unpushed commits onto the new remote head.
+    private int pushRetries = 3;
+    private String committerName = "UTCAP";
+    private String committerEmail = "utcap@users.noreply.github.com";
+
+    public String getDefaultBackend() {
+        return defaultBackend;
+    }
+
+    public void setDefaultBackend(String defaultBackend) {
+        this.defaultBackend = defaultBackend;
+    }
+
+    public String getBaseDir() {
+        return baseDir;
+    }
+
+    public void setBaseDir(String baseDir) {
+        this.baseDir = baseDir;
+    }
+
+    public String getRemoteUrlTemplate() {
+        return remoteUrlTemplate;
+    }
+
+    public void setRemoteUrlTemplate(String remoteUrlTemplate) {
+        this.remoteUrlTemplate = remoteUrlTemplate;
+    }
+
+    public long getFetchIntervalSeconds() {
+        return fetchIntervalSeconds;
+    }
+
+    public void setFetchIntervalSeconds(long fetchIntervalSeconds) {
+        this.fetchIntervalSeconds = fetchIntervalSeconds;
+    }
+
+    public int getPushRetries() {
+        return pushRetries;
+    }
+
+    public void setPushRetries(int pushRetries) {
+        this.pushRetries = pushRetries;
+    }
+
+    public String getCommitterName() {
+        return committerName;
+    }
+
+    public void setCommitterName(String committerName) {
+        this.committerName = committerName;
+    }
+
+    public String getCommitterEmail() {
+        return committerEmail;
+    }
+
+    public void setCommitterEmail(String committerEmail) {
+        this.committerEmail = committerEmail;
+    }
+}
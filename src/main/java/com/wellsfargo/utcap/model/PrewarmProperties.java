@@ -0,0 +1,80 @@
+package com.wellsfargo.utcap.model;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for prefetching repositories and branches right after the OAuth callback.
+ */
+@Component
+@ConfigurationProperties(prefix = "github.prewarm")
+public class PrewarmProperties {
+    private boolean enabled = true;
+    // Worker threads and queue depth of the bounded prefetch executor.
+    private int threads = 4;
+    private int queueCapacity = 200;
+    // How long a prefetched result stays usable if the UI never asks for it.
+    private long ttlSeconds = 60;
+    // How long a request waits for a prefetch that is still in flight before fetching on its own.
+    private long claimWaitMs = 1000;
+    // How many of the user's most recently used repositories get their branches prefetched.
+    private int recentRepositories = 3;
+    // Upper bound on tokens with prefetched results held in memory.
+    private int maxTokens = 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public long getClaimWaitMs() {
+        return claimWaitMs;
+    }
+
+    public void setClaimWaitMs(long claimWaitMs) {
+        this.claimWaitMs = claimWaitMs;
+    }
+
+    public int getRecentRepositories() {
+        return recentRepositories;
+    }
+
+    public void setRecentRepositories(int recentRepositories) {
+        this.recentRepositories = recentRepositories;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public void setMaxTokens(int maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+}
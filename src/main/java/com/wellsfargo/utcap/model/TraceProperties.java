@@ -0,0 +1,32 @@
+package com.wellsfargo.utcap.model;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for per-request tracing of GitHub calls.
+ */
+@Component
+@ConfigurationProperties(prefix = "github.trace")
+public class TraceProperties {
+    // Number of recent request traces kept for /ghe/debug/traces.
+    private int bufferSize = 200;
+    // Off by default: the traces of every session are visible to any logged-in caller.
+    private boolean debugEndpointEnabled = false;
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public boolean isDebugEndpointEnabled() {
+        return debugEndpointEnabled;
+    }
+
+    public void setDebugEndpointEnabled(boolean debugEndpointEnabled) {
+        this.debugEndpointEnabled = debugEndpointEnabled;
+    }
+}
@@ -0,0 +1,128 @@
+package com.wellsfargo.utcap.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit with a bounded wait queue whose limit follows observed latency (AIMD):
+ * each call completing under the latency target raises the limit by 1/limit, so by about one
+ * per window of calls; a slow or failed call multiplies it by the backoff ratio, at most once
+ * per latency target so one burst of slow calls does not collapse it to the minimum.
+ */
+final class AdaptiveBulkhead {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long latencyTargetNanos;
+    private final double backoffRatio;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition slotFreed = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private long lastDecreaseNanos;
+
+    AdaptiveBulkhead(int initialLimit, int minLimit, int maxLimit, int maxQueue,
+                     long latencyTargetMs, double backoffRatio) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMs);
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.lastDecreaseNanos = System.nanoTime() - latencyTargetNanos;
+    }
+
+    /**
+     * Takes a slot, waiting up to the timeout in the queue when none is free.
+     *
+     * @return ADMITTED, or the reason the call was rejected
+     */
+    Admission acquire(long timeoutNanos) {
+        lock.lock();
+        try {
+            if (queued == 0 && inFlight < (int) limit) {
+                inFlight++;
+                return Admission.ADMITTED;
+            }
+            if (queued >= maxQueue) {
+                return Admission.QUEUE_FULL;
+            }
+            queued++;
+            try {
+                long remaining = timeoutNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        return Admission.TIMED_OUT;
+                    }
+                    remaining = slotFreed.awaitNanos(remaining);
+                }
+                inFlight++;
+                return Admission.ADMITTED;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Admission.TIMED_OUT;
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the slot and feeds the call's latency and outcome into the limit.
+     */
+    void release(long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            inFlight--;
+            long now = System.nanoTime();
+            if (failed || latencyNanos > latencyTargetNanos) {
+                if (now - lastDecreaseNanos >= latencyTargetNanos) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+                }
+            } else {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int queued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    enum Admission {
+        ADMITTED, QUEUE_FULL, TIMED_OUT
+    }
+}
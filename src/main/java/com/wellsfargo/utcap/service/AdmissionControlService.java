@@ -0,0 +1,126 @@
+package com.wellsfargo.utcap.service;
+
+import com.wellsfargo.utcap.model.AdmissionProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bulkheads for GitHub-bound /ghe endpoints, one per endpoint or operation type, so a slow GitHub
+ * cannot tie up every request thread and stall endpoints that would be fast. Each bulkhead's
+ * concurrency limit adapts to the latency of the calls it admits; when it is saturated and its
+ * short wait queue is full (or the wait times out) the request fails fast with 503 and Retry-After.
+ * Only time spent on the call itself feeds the limit: waits for local locks and retry backoff that the
+ * call reports through {@link #excludeFromLatency(long)} are subtracted, as they say nothing about GitHub.
+ */
+@Service
+public class AdmissionControlService {
+
+    /**
+     * Bulkhead of feeds.lst registrations. Its limit is fixed (github.admission.feed-list-*): a registration
+     * waits for its coalesced batch, so its latency follows the coalescing window rather than GitHub.
+     */
+    public static final String FEED_LIST_BULKHEAD = "operation.pushFile.lst";
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControlService.class);
+    // Nanoseconds the admitted call on this thread spent waiting locally; null outside an admitted call.
+    private static final ThreadLocal<long[]> EXCLUDED_NANOS = new ThreadLocal<>();
+    private final AdmissionProperties admissionProperties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AdaptiveBulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    public AdmissionControlService(AdmissionProperties admissionProperties, MeterRegistry meterRegistry) {
+        this.admissionProperties = admissionProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs the call inside the named bulkhead, or answers 503 when the bulkhead is saturated.
+     * A 5xx response counts as a failed call and lowers the limit like a slow one.
+     */
+    public ResponseEntity<?> call(String bulkheadName, Supplier<ResponseEntity<?>> call) {
+        if (!admissionProperties.isEnabled()) {
+            return call.get();
+        }
+        AdaptiveBulkhead bulkhead = bulkheads.computeIfAbsent(bulkheadName, this::newBulkhead);
+        long waitStarted = System.nanoTime();
+        AdaptiveBulkhead.Admission admission =
+                bulkhead.acquire(TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs(bulkheadName)));
+        long started = System.nanoTime();
+        meterRegistry.timer("github.bulkhead.wait", "bulkhead", bulkheadName)
+                .record(started - waitStarted, TimeUnit.NANOSECONDS);
+        if (admission != AdaptiveBulkhead.Admission.ADMITTED) {
+            meterRegistry.counter("github.bulkhead.rejections", "bulkhead", bulkheadName,
+                    "reason", admission == AdaptiveBulkhead.Admission.QUEUE_FULL ? "queue_full" : "timeout").increment();
+            log.warn("Bulkhead {} saturated (limit {}, queued {}): rejecting request",
+                    bulkheadName, bulkhead.limit(), bulkhead.queued());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(admissionProperties.getRetryAfterSeconds()))
+                    .body("Service busy, retry later");
+        }
+        boolean failed = true;
+        long[] excluded = new long[1];
+        long[] outer = EXCLUDED_NANOS.get();
+        EXCLUDED_NANOS.set(excluded);
+        try {
+            ResponseEntity<?> response = call.get();
+            failed = response.getStatusCode().is5xxServerError();
+            return response;
+        } finally {
+            EXCLUDED_NANOS.set(outer);
+            bulkhead.release(Math.max(0, System.nanoTime() - started - excluded[0]), failed);
+        }
+    }
+
+    /**
+     * Longest a request waits for a slot in the named bulkhead, or Long.MAX_VALUE with admission control off.
+     */
+    public long queueTimeoutMs(String bulkheadName) {
+        if (!admissionProperties.isEnabled()) {
+            return Long.MAX_VALUE;
+        }
+        return FEED_LIST_BULKHEAD.equals(bulkheadName)
+                ? admissionProperties.getFeedListQueueTimeoutMs() : admissionProperties.getQueueTimeoutMs();
+    }
+
+    /**
+     * Leaves the given local wait (a lock, a retry backoff) out of the latency that the admitted call
+     * on this thread reports to its bulkhead. Outside an admitted call this does nothing.
+     */
+    public static void excludeFromLatency(long nanos) {
+        long[] excluded = EXCLUDED_NANOS.get();
+        if (excluded != null) {
+            excluded[0] += nanos;
+        }
+    }
+
+    private AdaptiveBulkhead newBulkhead(String name) {
+        AdaptiveBulkhead bulkhead;
+        if (FEED_LIST_BULKHEAD.equals(name)) {
+            int limit = admissionProperties.getFeedListLimit();
+            bulkhead = new AdaptiveBulkhead(limit, limit, limit, admissionProperties.getFeedListMaxQueue(),
+                    admissionProperties.getLatencyTargetMs(), admissionProperties.getBackoffRatio());
+        } else {
+            bulkhead = new AdaptiveBulkhead(admissionProperties.getInitialLimit(),
+                    admissionProperties.getMinLimit(), admissionProperties.getMaxLimit(), admissionProperties.getMaxQueue(),
+                    admissionProperties.getLatencyTargetMs(), admissionProperties.getBackoffRatio());
+        }
+        Gauge.builder("github.bulkhead.limit", bulkhead, AdaptiveBulkhead::limit)
+                .tag("bulkhead", name).register(meterRegistry);
+        Gauge.builder("github.bulkhead.in_flight", bulkhead, AdaptiveBulkhead::inFlight)
+                .tag("bulkhead", name).register(meterRegistry);
+        Gauge.builder("github.bulkhead.queued", bulkhead, AdaptiveBulkhead::queued)
+                .tag("bulkhead", name).register(meterRegistry);
+        return bulkhead;
+    }
+}
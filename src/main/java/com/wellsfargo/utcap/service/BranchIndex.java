@@ -0,0 +1,135 @@
+package com.wellsfargo.utcap.service;
+
+import com.wellsfargo.utcap.dto.BranchPage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable, sorted snapshot of a repository's branch names.
+ * Names are ordered case-insensitively (ties broken by exact order), so a case-insensitive
+ * prefix match is one binary search plus a contiguous scan. Updates return a new snapshot.
+ */
+final class BranchIndex {
+
+    static final Comparator<String> ORDER =
+            String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    private final String[] names;
+    private final long loadedAtNanos;
+
+    private BranchIndex(String[] names, long loadedAtNanos) {
+        this.names = names;
+        this.loadedAtNanos = loadedAtNanos;
+    }
+
+    static BranchIndex of(Collection<String> branchNames) {
+        String[] sorted = branchNames.stream().distinct().toArray(String[]::new);
+        Arrays.sort(sorted, ORDER);
+        return new BranchIndex(sorted, System.nanoTime());
+    }
+
+    /**
+     * Returns a snapshot that also contains the given branch.
+     */
+    BranchIndex with(String name) {
+        int position = Arrays.binarySearch(names, name, ORDER);
+        if (position >= 0) {
+            return this;
+        }
+        int insertAt = -(position + 1);
+        String[] updated = new String[names.length + 1];
+        System.arraycopy(names, 0, updated, 0, insertAt);
+        updated[insertAt] = name;
+        System.arraycopy(names, insertAt, updated, insertAt + 1, names.length - insertAt);
+        return new BranchIndex(updated, loadedAtNanos);
+    }
+
+    /**
+     * Returns a snapshot without the given branch.
+     */
+    BranchIndex without(String name) {
+        int position = Arrays.binarySearch(names, name, ORDER);
+        if (position < 0) {
+            return this;
+        }
+        String[] updated = new String[names.length - 1];
+        System.arraycopy(names, 0, updated, 0, position);
+        System.arraycopy(names, position + 1, updated, position, names.length - position - 1);
+        return new BranchIndex(updated, loadedAtNanos);
+    }
+
+    /**
+     * Case-insensitive prefix or substring search, resuming after the cursor (the last name of the previous page).
+     */
+    BranchPage search(String query, boolean substring, String after, int limit) {
+        String q = query == null ? "" : query;
+        List<String> items = new ArrayList<>(Math.min(limit + 1, 64));
+        int i = after == null ? 0 : upperBound(after);
+        if (substring) {
+            for (; i < names.length && items.size() <= limit; i++) {
+                if (containsIgnoreCase(names[i], q)) {
+                    items.add(names[i]);
+                }
+            }
+        } else {
+            i = Math.max(i, lowerBound(q));
+            for (; i < names.length && items.size() <= limit && names[i].regionMatches(true, 0, q, 0, q.length()); i++) {
+                items.add(names[i]);
+            }
+        }
+        // One extra match was collected to learn whether another page exists.
+        String nextCursor = null;
+        if (items.size() > limit) {
+            items.remove(limit);
+            nextCursor = items.isEmpty() ? null : items.get(items.size() - 1);
+        }
+        return new BranchPage(items, nextCursor);
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    long getLoadedAtNanos() {
+        return loadedAtNanos;
+    }
+
+    /**
+     * First position whose name is not case-insensitively smaller than the prefix.
+     */
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = names.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(names[mid], prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * First position whose name sorts strictly after the given name.
+     */
+    private int upperBound(String name) {
+        int position = Arrays.binarySearch(names, name, ORDER);
+        return position >= 0 ? position + 1 : -(position + 1);
+    }
+
+    private static boolean containsIgnoreCase(String name, String query) {
+        int last = name.length() - query.length();
+        for (int offset = 0; offset <= last; offset++) {
+            if (name.regionMatches(true, offset, query, 0, query.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
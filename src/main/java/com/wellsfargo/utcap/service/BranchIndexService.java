@@ -0,0 +1,244 @@
+package com.wellsfargo.utcap.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.wellsfargo.utcap.dto.BranchPage;
+import com.wellsfargo.utcap.model.BranchIndexProperties;
+import com.wellsfargo.utcap.model.GithubApiProperties;
+import com.wellsfargo.utcap.trace.TraceContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.*;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps a sorted in-memory branch index per repository and serves prefix / substring search over it.
+ * The first search of a repository loads the full branch list; after that searches are local lookups.
+ * The index is kept current incrementally: branches created through /ghe/operation, and branches the
+ * local mirror sees created or deleted when it fetches or pushes, are applied to it as events. GitHub
+ * has no "branches changed since" query, so changes made elsewhere are picked up by a full reload
+ * every github.branch-index.reconcile-seconds, run in the background while the current snapshot
+ * keeps being served.
+ */
+@Service
+public class BranchIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(BranchIndexService.class);
+    private final RepositoryBackend repositoryBackend;
+    private final GithubApiProperties githubApiProperties;
+    private final BranchIndexProperties branchIndexProperties;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService refresher;
+
+    // "owner/repo" -> index holder, least recently searched evicted first
+    private final Map<String, Holder> holders;
+    // token + repo pairs already known to have read access, so a shared index is not served to outsiders
+    private final Map<String, Boolean> verifiedAccess;
+
+    public BranchIndexService(RepositoryBackend repositoryBackend,
+                              GithubApiProperties githubApiProperties,
+                              BranchIndexProperties branchIndexProperties,
+                              MeterRegistry meterRegistry) {
+        this.repositoryBackend = repositoryBackend;
+        this.githubApiProperties = githubApiProperties;
+        this.branchIndexProperties = branchIndexProperties;
+        this.meterRegistry = meterRegistry;
+        int maxRepositories = Math.max(1, branchIndexProperties.getMaxRepositories());
+        this.holders = boundedMap(maxRepositories);
+        this.verifiedAccess = boundedMap(maxRepositories * 16);
+        this.refresher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "branch-index-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Searches the branches of a repository.
+     *
+     * @param query     text to match, case-insensitively
+     * @param substring true to match anywhere in the name, false to match as a prefix
+     * @param cursor    nextCursor of the previous page, or null for the first page
+     * @param limit     maximum number of names to return; clamped to the configured bounds
+     */
+    public BranchPage search(String accessToken, String owner, String repo, String query,
+                             boolean substring, String cursor, Integer limit) throws IOException {
+        BranchIndex index = indexFor(accessToken, owner, repo);
+        int pageSize = limit == null ? branchIndexProperties.getDefaultLimit()
+                : Math.max(1, Math.min(limit, branchIndexProperties.getMaxLimit()));
+        long started = System.nanoTime();
+        BranchPage page = index.search(query, substring, decodeCursor(cursor), pageSize);
+        meterRegistry.timer("github.branch.index.search", "mode", substring ? "substring" : "prefix")
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return new BranchPage(page.getItems(), encodeCursor(page.getNextCursor()));
+    }
+
+    /**
+     * Applies a branch created through this service, or seen created on GitHub, to an already loaded index.
+     */
+    public void branchCreated(String owner, String repo, String branch) {
+        apply(owner, repo, branch, true);
+    }
+
+    /**
+     * Removes a branch seen deleted on GitHub from an already loaded index.
+     */
+    public void branchDeleted(String owner, String repo, String branch) {
+        apply(owner, repo, branch, false);
+    }
+
+    /**
+     * Applies one branch event. While a reconcile is loading, the event is also remembered and
+     * replayed onto the reloaded snapshot, which may have been listed before the change.
+     */
+    private void apply(String owner, String repo, String branch, boolean exists) {
+        Holder holder = holders.get(owner + "/" + repo);
+        if (holder == null) {
+            return;
+        }
+        synchronized (holder) {
+            if (holder.index != null) {
+                holder.index = exists ? holder.index.with(branch) : holder.index.without(branch);
+                meterRegistry.counter("github.branch.index.events", "type", exists ? "created" : "deleted").increment();
+            }
+            if (holder.changesDuringReconcile != null) {
+                holder.changesDuringReconcile.put(branch, exists);
+            }
+        }
+    }
+
+    private BranchIndex indexFor(String accessToken, String owner, String repo) throws IOException {
+        String key = owner + "/" + repo;
+        Holder holder = holders.computeIfAbsent(key, k -> new Holder());
+        BranchIndex index = holder.index;
+        if (index == null) {
+            synchronized (holder) {
+                if (holder.index == null) {
+                    // Loading with the caller's token is itself the access check.
+                    holder.index = load(accessToken, owner, repo);
+                    verifiedAccess.put(accessToken + "\u0000" + key, Boolean.TRUE);
+                    return holder.index;
+                }
+                // Another caller loaded the index while this one waited: it still has to prove access.
+                index = holder.index;
+            }
+        }
+        verifyAccess(accessToken, owner, repo);
+        long reconcileNanos = TimeUnit.SECONDS.toNanos(branchIndexProperties.getReconcileSeconds());
+        if (System.nanoTime() - index.getLoadedAtNanos() > reconcileNanos && holder.refreshing.compareAndSet(false, true)) {
+            synchronized (holder) {
+                holder.changesDuringReconcile = new LinkedHashMap<>();
+            }
+            refresher.execute(() -> {
+                try {
+                    BranchIndex reloaded = load(accessToken, owner, repo);
+                    synchronized (holder) {
+                        for (Map.Entry<String, Boolean> change : holder.changesDuringReconcile.entrySet()) {
+                            reloaded = change.getValue() ? reloaded.with(change.getKey()) : reloaded.without(change.getKey());
+                        }
+                        holder.index = reloaded;
+                    }
+                } catch (Exception e) {
+                    log.warn("Branch index reconcile for {} failed: {}", key, e.getMessage());
+                } finally {
+                    synchronized (holder) {
+                        holder.changesDuringReconcile = null;
+                    }
+                    holder.refreshing.set(false);
+                }
+            });
+        }
+        return index;
+    }
+
+    private BranchIndex load(String accessToken, String owner, String repo) throws IOException {
+        long started = System.nanoTime();
+        ArrayNode branches = repositoryBackend.listBranches(accessToken, owner, repo);
+        List<String> names = new ArrayList<>(branches.size());
+        for (JsonNode branch : branches) {
+            names.add(branch.asText());
+        }
+        BranchIndex index = BranchIndex.of(names);
+        meterRegistry.timer("github.branch.index.load").record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        log.info("Indexed {} branches of {}/{}", index.size(), owner, repo);
+        return index;
+    }
+
+    /**
+     * Confirms once per token that the caller can read the repository before serving its shared index.
+     */
+    private void verifyAccess(String accessToken, String owner, String repo) {
+        String key = accessToken + "\u0000" + owner + "/" + repo;
+        if (verifiedAccess.containsKey(key)) {
+            return;
+        }
+        String url = githubApiProperties.getBaseUrl() + "/repos/" + owner + "/" + repo;
+        RestTemplate restTemplate = new RestTemplate();
+        HttpEntity<?> entity = new HttpEntity<>(buildAuthHeaders(accessToken));
+        // Throws HttpClientErrorException (404/403) when the token cannot see the repository.
+        restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+        verifiedAccess.put(key, Boolean.TRUE);
+    }
+
+    private static String encodeCursor(String lastName) {
+        if (lastName == null) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastName.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+
+    private static <K, V> Map<K, V> boundedMap(int maxEntries) {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Builds authentication headers for GitHub API requests.
+     */
+    private HttpHeaders buildAuthHeaders(String accessToken) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "token " + accessToken);
+        headers.setAccept(Collections.singletonList(MediaType.parseMediaType("application/vnd.github.v3+json")));
+        headers.add("X-REQUEST-ID", UUID.randomUUID().toString());
+        headers.add("X-CORRELATION-ID", TraceContext.correlationId());
+        headers.add("X-CLIENT-ID", "UTCAP");
+        return headers;
+    }
+
+    /**
+     * Current snapshot of one repository's index plus its reconcile state.
+     */
+    private static final class Holder {
+        volatile BranchIndex index;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+        // branch -> exists, for events that arrive while a reconcile is loading; guarded by the holder
+        Map<String, Boolean> changesDuringReconcile;
+    }
+}
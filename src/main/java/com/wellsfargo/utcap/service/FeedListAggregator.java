@@ -0,0 +1,352 @@
+package com.wellsfargo.utcap.service;
+
+import com.wellsfargo.utcap.dto.GitOperationRequest;
+import com.wellsfargo.utcap.model.FeedListProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Coalesces feed registrations into the shared config/feeds.lst of a SOR.
+ * Registrations for the same (repo, branch, path) arriving within the coalesce window are merged
+ * into the current file content, deduplicated, and written as a single commit, whichever session
+ * they come from; every caller in the batch receives the result of that commit.
+ * Because the commit is made with one participant's token, every other participant's token is
+ * first checked for push access to the repository (cached per token), and registrations without
+ * it are rejected with 403 instead of being written under someone else's credentials.
+ * <p>
+ * Flushes run on github.feeds.flush-threads writer threads, at most one at a time per
+ * (repo, branch): a slow repository holds back only its own batches, not every SOR's.
+ */
+@Service
+public class FeedListAggregator {
+
+    private static final Logger log = LoggerFactory.getLogger(FeedListAggregator.class);
+    private final GithubContentService githubContentService;
+    private final PathLockService pathLockService;
+    private final ShaRetryService shaRetryService;
+    private final FeedListProperties feedListProperties;
+    private final MeterRegistry meterRegistry;
+    // Only fires coalesce windows; the writes run on the writers pool.
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ThreadPoolExecutor writers;
+    private final ConcurrentHashMap<String, Batch> openBatches = new ConcurrentHashMap<>();
+    // owner/repo/branch -> last flush queued for it; each flush starts after the previous one finished
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> flushChains = new ConcurrentHashMap<>();
+
+    public FeedListAggregator(GithubContentService githubContentService,
+                              PathLockService pathLockService,
+                              ShaRetryService shaRetryService,
+                              FeedListProperties feedListProperties,
+                              MeterRegistry meterRegistry) {
+        this.githubContentService = githubContentService;
+        this.pathLockService = pathLockService;
+        this.shaRetryService = shaRetryService;
+        this.feedListProperties = feedListProperties;
+        this.meterRegistry = meterRegistry;
+
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "feeds-lst-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int threads = Math.max(1, feedListProperties.getFlushThreads());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.writers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "feeds-lst-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.writers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Registers the feed line(s) of a pushFile request with fileType "lst" and waits for the merged commit.
+     * The request's content (base64) holds the lines to add; if it is empty the feed name is used.
+     *
+     * @return the GitHub response of the commit that contains the registration
+     * @throws IOException if the commit does not complete within github.feeds.max-wait-ms
+     */
+    public String register(String accessToken, GitOperationRequest request) throws IOException {
+        Registration registration = new Registration(accessToken, feedLines(request), request.getCommitMessage());
+        String key = String.join("\u0000", request.getOwner(), request.getRepo(),
+                request.getNewBranch(), request.getFilePath());
+        meterRegistry.counter("github.feeds.registrations").increment();
+        while (true) {
+            Batch batch = openBatches.computeIfAbsent(key, k -> openBatch(k, request));
+            if (batch.add(registration)) {
+                if (batch.size() >= feedListProperties.getMaxBatchSize()) {
+                    queueFlush(batch);
+                }
+                break;
+            }
+            // The batch was closed for flushing between lookup and add; start a new one.
+            openBatches.remove(key, batch);
+        }
+        return await(registration.result);
+    }
+
+    private Batch openBatch(String key, GitOperationRequest request) {
+        Batch batch = new Batch(key, request.getOwner(), request.getRepo(), request.getNewBranch(), request.getFilePath());
+        scheduler.schedule(() -> queueFlush(batch), feedListProperties.getCoalesceWindowMs(), TimeUnit.MILLISECONDS);
+        return batch;
+    }
+
+    /**
+     * Queues the flush behind any flush still running or queued for the same repository branch.
+     */
+    private void queueFlush(Batch batch) {
+        String chainKey = batch.owner + "/" + batch.repo + "/" + batch.branch;
+        CompletableFuture<Void> next = flushChains.compute(chainKey, (key, previous) -> {
+            CompletableFuture<Void> after = previous == null ? CompletableFuture.completedFuture(null)
+                    : previous.handle((ignored, error) -> null);
+            return after.thenRunAsync(() -> flush(batch), writers);
+        });
+        next.whenComplete((ignored, error) -> flushChains.remove(chainKey, next));
+    }
+
+    private void flush(Batch batch) {
+        if (!batch.close()) {
+            return;
+        }
+        openBatches.remove(batch.key, batch);
+        meterRegistry.summary("github.feeds.batch.size").record(batch.registrations.size());
+        List<Registration> admitted;
+        try {
+            admitted = admit(batch);
+        } catch (Exception e) {
+            log.error("flush: Checking push access for {} failed", batch.path, e);
+            batch.registrations.forEach(registration -> registration.result.completeExceptionally(e));
+            return;
+        }
+        if (admitted.isEmpty()) {
+            return;
+        }
+        try {
+            String result = write(batch, admitted);
+            admitted.forEach(registration -> registration.result.complete(result));
+        } catch (Exception e) {
+            log.error("flush: Writing {} feed registrations to {} failed", admitted.size(), batch.path, e);
+            admitted.forEach(registration -> registration.result.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Keeps the registrations whose token may push to the repository and rejects the rest with 403.
+     */
+    private List<Registration> admit(Batch batch) throws IOException {
+        Map<String, Boolean> allowed = new HashMap<>();
+        List<Registration> admitted = new ArrayList<>();
+        for (Registration registration : batch.registrations) {
+            Boolean canPush = allowed.get(registration.accessToken);
+            if (canPush == null) {
+                canPush = githubContentService.canPush(registration.accessToken, batch.owner, batch.repo);
+                allowed.put(registration.accessToken, canPush);
+            }
+            if (canPush) {
+                admitted.add(registration);
+            } else {
+                meterRegistry.counter("github.feeds.rejected").increment();
+                registration.result.completeExceptionally(new HttpClientErrorException(HttpStatus.FORBIDDEN,
+                        "No push access to " + batch.owner + "/" + batch.repo));
+            }
+        }
+        return admitted;
+    }
+
+    /**
+     * Merges the admitted registrations into the current file under the path lock, re-reading and
+     * merging again if the SHA moves (see ShaRetryService).
+     * The commit is made with the first admitted registration's token.
+     */
+    private String write(Batch batch, List<Registration> admitted) throws IOException {
+        String accessToken = admitted.get(0).accessToken;
+        List<String> lines = new ArrayList<>();
+        Set<String> messages = new LinkedHashSet<>();
+        for (Registration registration : admitted) {
+            lines.addAll(registration.lines);
+            if (registration.message != null) {
+                messages.add(registration.message);
+            }
+        }
+        Lock lock = pathLockService.lockFor(batch.owner, batch.repo, batch.branch, batch.path);
+        lock.lock();
+        try {
+            return shaRetryService.run(batch.path, () -> {
+                GithubContentService.FileContent current = githubContentService.getFile(
+                        accessToken, batch.owner, batch.repo, batch.branch, batch.path);
+                List<String> merged = new ArrayList<>();
+                int added = mergeLines(current == null ? "" : current.getContent(), lines, merged);
+                if (current != null && added == 0) {
+                    log.info("write: All {} registrations already present in {}", lines.size(), batch.path);
+                    return "No change: feeds already registered in " + batch.path;
+                }
+                String content = String.join("\n", merged) + "\n";
+                String response = githubContentService.putFile(accessToken, batch.owner, batch.repo,
+                        batch.branch, batch.path, commitMessage(messages, batch.path, added),
+                        Base64.getEncoder().encodeToString(content.getBytes(StandardCharsets.UTF_8)),
+                        current == null ? null : current.getSha());
+                meterRegistry.counter("github.feeds.commits").increment();
+                log.info("write: Committed {} new feed lines from {} registrations to {}",
+                        added, admitted.size(), batch.path);
+                return response;
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends the new lines that are not yet in the existing content.
+     * Existing lines keep their order; blank and duplicate lines are dropped.
+     *
+     * @return the number of lines added
+     */
+    static int mergeLines(String existing, List<String> additions, List<String> merged) {
+        Set<String> seen = new LinkedHashSet<>();
+        for (String line : existing.split("\\R")) {
+            String trimmed = line.strip();
+            if (!trimmed.isEmpty()) {
+                seen.add(trimmed);
+            }
+        }
+        int before = seen.size();
+        seen.addAll(additions);
+        merged.addAll(seen);
+        return seen.size() - before;
+    }
+
+    private static String commitMessage(Set<String> messages, String path, int added) {
+        if (messages.size() == 1) {
+            return messages.iterator().next();
+        }
+        return "Register " + added + " feeds in " + path;
+    }
+
+    private static List<String> feedLines(GitOperationRequest request) {
+        List<String> lines = new ArrayList<>();
+        if (request.getContent() != null && !request.getContent().isBlank()) {
+            String decoded = new String(Base64.getMimeDecoder().decode(request.getContent()), StandardCharsets.UTF_8);
+            for (String line : decoded.split("\\R")) {
+                String trimmed = line.strip();
+                if (!trimmed.isEmpty()) {
+                    lines.add(trimmed);
+                }
+            }
+        }
+        if (lines.isEmpty()) {
+            lines.add(request.getFeedName());
+        }
+        return lines;
+    }
+
+    private String await(CompletableFuture<String> result) throws IOException {
+        try {
+            return result.get(feedListProperties.getMaxWaitMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            meterRegistry.counter("github.feeds.timeouts").increment();
+            throw new IOException("Timed out after " + feedListProperties.getMaxWaitMs()
+                    + " ms waiting for feeds.lst commit; the registration may still be written", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for feeds.lst commit", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Stops flushing; registrations still waiting in open batches fail instead of hanging.
+     */
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        writers.shutdownNow();
+        IOException stopped = new IOException("Feed list aggregator stopped");
+        openBatches.values().forEach(batch -> {
+            if (batch.close()) {
+                batch.registrations.forEach(registration -> registration.result.completeExceptionally(stopped));
+            }
+        });
+        openBatches.clear();
+    }
+
+    /**
+     * One caller's feed lines together with the future its request thread waits on.
+     */
+    private static final class Registration {
+        final String accessToken;
+        final List<String> lines;
+        final String message;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        Registration(String accessToken, List<String> lines, String message) {
+            this.accessToken = accessToken;
+            this.lines = lines;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Registrations collected for one feeds.lst; closed once its flush starts.
+     */
+    private static final class Batch {
+        final String key;
+        final String owner;
+        final String repo;
+        final String branch;
+        final String path;
+        final List<Registration> registrations = new ArrayList<>();
+        private boolean closed;
+
+        Batch(String key, String owner, String repo, String branch, String path) {
+            this.key = key;
+            this.owner = owner;
+            this.repo = repo;
+            this.branch = branch;
+            this.path = path;
+        }
+
+        synchronized boolean add(Registration registration) {
+            if (closed) {
+                return false;
+            }
+            registrations.add(registration);
+            return true;
+        }
+
+        synchronized int size() {
+            return registrations.size();
+        }
+
+        /**
+         * @return true if this call closed the batch, false if it was already closed
+         */
+        synchronized boolean close() {
+            if (closed) {
+                return false;
+            }
+            closed = true;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.wellsfargo.utcap.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.wellsfargo.utcap.model.GithubApiProperties;
+import com.wellsfargo.utcap.trace.TraceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.*;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads and writes single files through the GitHub Contents API.
+ */
+@Service
+public class GithubContentService {
+
+    private static final Logger log = LoggerFactory.getLogger(GithubContentService.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GithubApiProperties githubApiProperties;
+    // token + repo pairs already known to have push access
+    private final Map<String, Boolean> pushAccess = boundedMap(10_000);
+    // token -> GitHub login of its user
+    private final Map<String, String> logins = boundedMap(10_000);
+
+    public GithubContentService(GithubApiProperties githubApiProperties) {
+        this.githubApiProperties = githubApiProperties;
+    }
+
+    /**
+     * Fetches a file from a branch.
+     *
+     * @return the file's blob SHA and decoded text, or null if the file does not exist
+     */
+    public FileContent getFile(String accessToken, String owner, String repo, String branch, String path) throws IOException {
+        String url = githubApiProperties.getBaseUrl() + "/repos/" + owner + "/" + repo + "/contents/" + path + "?ref=" + branch;
+        RestTemplate restTemplate = new RestTemplate();
+        HttpEntity<?> entity = new HttpEntity<>(buildAuthHeaders(accessToken));
+        try {
+            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+            JsonNode root = objectMapper.readTree(response.getBody());
+            if (!root.has("sha")) {
+                throw new IOException("SHA not found in GitHub response.");
+            }
+            String content = new String(Base64.getMimeDecoder().decode(root.path("content").asText("")),
+                    StandardCharsets.UTF_8);
+            return new FileContent(root.get("sha").asText(), content);
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Creates (sha == null) or updates a file on a branch.
+     *
+     * @param base64Content the new file content, base64 encoded
+     * @return the raw GitHub response body
+     */
+    public String putFile(String accessToken, String owner, String repo, String branch, String path,
+                          String message, String base64Content, String sha) throws IOException {
+        String url = githubApiProperties.getBaseUrl() + "/repos/" + owner + "/" + repo + "/contents/" + path;
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("message", message);
+        payload.put("content", base64Content);
+        payload.put("branch", branch);
+        if (sha != null) {
+            payload.put("sha", sha);
+        }
+        RestTemplate restTemplate = new RestTemplate();
+        HttpHeaders headers = buildAuthHeaders(accessToken);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<String> entity = new HttpEntity<>(objectMapper.writeValueAsString(payload), headers);
+        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.PUT, entity, String.class);
+        log.info("putFile: {} {} on {}: {}", sha == null ? "Created" : "Updated", path, branch, response.getStatusCode());
+        return response.getBody();
+    }
+
+    /**
+     * Tells whether the token may push to the repository; a repository it cannot see counts as no.
+     * Positive answers are cached per token and repository, so callers may ask on every write.
+     */
+    public boolean canPush(String accessToken, String owner, String repo) throws IOException {
+        String key = accessToken + "\u0000" + owner + "/" + repo;
+        if (pushAccess.containsKey(key)) {
+            return true;
+        }
+        String url = githubApiProperties.getBaseUrl() + "/repos/" + owner + "/" + repo;
+        RestTemplate restTemplate = new RestTemplate();
+        HttpEntity<?> entity = new HttpEntity<>(buildAuthHeaders(accessToken));
+        try {
+            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+            boolean canPush = objectMapper.readTree(response.getBody()).path("permissions").path("push").asBoolean(false);
+            if (canPush) {
+                pushAccess.put(key, Boolean.TRUE);
+            }
+            return canPush;
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND || e.getStatusCode() == HttpStatus.FORBIDDEN) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the GitHub login of the token's user, cached per token.
+     */
+    public String login(String accessToken) throws IOException {
+        String login = logins.get(accessToken);
+        if (login != null) {
+            return login;
+        }
+        String url = githubApiProperties.getBaseUrl() + "/user";
+        RestTemplate restTemplate = new RestTemplate();
+        HttpEntity<?> entity = new HttpEntity<>(buildAuthHeaders(accessToken));
+        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+        JsonNode root = objectMapper.readTree(response.getBody());
+        if (!root.hasNonNull("login")) {
+            throw new IOException("login not found in GitHub response.");
+        }
+        login = root.get("login").asText();
+        logins.put(accessToken, login);
+        return login;
+    }
+
+    private static <K, V> Map<K, V> boundedMap(int maxEntries) {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Builds authentication headers for GitHub API requests.
+     */
+    private HttpHeaders buildAuthHeaders(String accessToken) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "token " + accessToken);
+        headers.setAccept(Collections.singletonList(MediaType.parseMediaType("application/vnd.github.v3+json")));
+        headers.add("X-REQUEST-ID", UUID.randomUUID().toString());
+        headers.add("X-CORRELATION-ID", TraceContext.correlationId());
+        headers.add("X-CLIENT-ID", "UTCAP");
+        return headers;
+    }
+
+    /**
+     * A file's blob SHA together with its decoded text.
+     */
+    public static final class FileContent {
+        private final String sha;
+        private final String content;
+
+        public FileContent(String sha, String content) {
+            this.sha = sha;
+            this.content = content;
+        }
+
+        public String getSha() {
+            return sha;
+        }
+
+        public String getContent() {
+            return content;
+        }
+    }
+}
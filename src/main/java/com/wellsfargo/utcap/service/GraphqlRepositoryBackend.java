@@ -0,0 +1,226 @@
+package com.wellsfargo.utcap.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.wellsfargo.utcap.model.GithubApiProperties;
+import com.wellsfargo.utcap.trace.Span;
+import com.wellsfargo.utcap.trace.TraceContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.*;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository listing over the GraphQL API.
+ * Each query selects only the fields RepositoryController returns and walks the connection
+ * with cursors, so a listing costs one call per page of 100 instead of full REST payloads.
+ * The repository query also selects the first page of each repository's branches (refs); the UI's
+ * following branch listing reuses them and only pages on for repositories with more branches.
+ */
+@Service
+@ConditionalOnProperty(prefix = "github.api", name = "repository-backend", havingValue = "graphql")
+public class GraphqlRepositoryBackend implements RepositoryBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(GraphqlRepositoryBackend.class);
+
+    // viewerPermission values that allow pushing (the REST "permissions.push" flag).
+    private static final Set<String> PUSH_PERMISSIONS = Set.of("WRITE", "MAINTAIN", "ADMIN");
+
+    private static final String REPOSITORIES_QUERY =
+            "query($first: Int!, $cursor: String) { viewer { repositories(first: $first, after: $cursor,"
+                    + " affiliations: [OWNER, COLLABORATOR, ORGANIZATION_MEMBER]) {"
+                    + " pageInfo { hasNextPage endCursor } nodes { name owner { login } viewerPermission } } } }";
+
+    private static final String REPOSITORIES_WITH_REFS_QUERY =
+            "query($first: Int!, $cursor: String, $refs: Int!) { viewer { repositories(first: $first, after: $cursor,"
+                    + " affiliations: [OWNER, COLLABORATOR, ORGANIZATION_MEMBER]) {"
+                    + " pageInfo { hasNextPage endCursor } nodes { name owner { login } viewerPermission"
+                    + " refs(refPrefix: \"refs/heads/\", first: $refs) { pageInfo { hasNextPage endCursor } nodes { name } } } } } }";
+
+    private static final String BRANCHES_QUERY =
+            "query($owner: String!, $name: String!, $first: Int!, $cursor: String) {"
+                    + " repository(owner: $owner, name: $name) {"
+                    + " refs(refPrefix: \"refs/heads/\", first: $first, after: $cursor) {"
+                    + " pageInfo { hasNextPage endCursor } nodes { name } } } }";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GithubApiProperties githubApiProperties;
+    private final MeterRegistry meterRegistry;
+    // access token + "owner/repo" -> branches returned with the last repository listing
+    private final Map<String, PrefetchedRefs> prefetchedRefs = Collections.synchronizedMap(
+            new LinkedHashMap<String, PrefetchedRefs>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PrefetchedRefs> eldest) {
+                    return size() > 10_000;
+                }
+            });
+
+    public GraphqlRepositoryBackend(GithubApiProperties githubApiProperties, MeterRegistry meterRegistry) {
+        this.githubApiProperties = githubApiProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ArrayNode listRepositories(String accessToken) throws IOException {
+        ArrayNode filteredRepos = objectMapper.createArrayNode();
+        int refs = githubApiProperties.getGraphqlRepositoryRefs();
+        String cursor = null;
+        do {
+            ObjectNode variables = objectMapper.createObjectNode();
+            variables.put("first", githubApiProperties.getGraphqlPageSize());
+            variables.put("cursor", cursor);
+            if (refs > 0) {
+                variables.put("refs", refs);
+            }
+            JsonNode connection = execute(accessToken, refs > 0 ? REPOSITORIES_WITH_REFS_QUERY : REPOSITORIES_QUERY,
+                    variables, "repositories").path("viewer").path("repositories");
+            for (JsonNode repoNode : connection.path("nodes")) {
+                if (PUSH_PERMISSIONS.contains(repoNode.path("viewerPermission").asText())) {
+                    ObjectNode simpleRepo = objectMapper.createObjectNode();
+                    simpleRepo.put("name", repoNode.get("name").asText());
+                    simpleRepo.put("owner", repoNode.get("owner").get("login").asText());
+                    filteredRepos.add(simpleRepo);
+                    if (repoNode.has("refs")) {
+                        rememberRefs(accessToken, simpleRepo.get("owner").asText(), simpleRepo.get("name").asText(),
+                                repoNode.get("refs"));
+                    }
+                }
+            }
+            cursor = nextCursor(connection);
+        } while (cursor != null);
+        return filteredRepos;
+    }
+
+    @Override
+    public ArrayNode listBranches(String accessToken, String owner, String repo) throws IOException {
+        ArrayNode branchNames = objectMapper.createArrayNode();
+        String cursor = null;
+        PrefetchedRefs prefetched = prefetchedRefs.remove(refsKey(accessToken, owner, repo));
+        if (prefetched != null && System.nanoTime() - prefetched.fetchedAtNanos
+                < TimeUnit.SECONDS.toNanos(githubApiProperties.getGraphqlRefsTtlSeconds())) {
+            meterRegistry.counter("github.repository.refs.reused", "backend", "graphql").increment();
+            branchNames.addAll(prefetched.names);
+            if (prefetched.nextCursor == null) {
+                return branchNames;
+            }
+            cursor = prefetched.nextCursor;
+        }
+        do {
+            ObjectNode variables = objectMapper.createObjectNode();
+            variables.put("owner", owner);
+            variables.put("name", repo);
+            variables.put("first", githubApiProperties.getGraphqlPageSize());
+            variables.put("cursor", cursor);
+            JsonNode connection = execute(accessToken, BRANCHES_QUERY, variables, "branches")
+                    .path("repository").path("refs");
+            for (JsonNode ref : connection.path("nodes")) {
+                branchNames.add(ref.get("name").asText());
+            }
+            cursor = nextCursor(connection);
+        } while (cursor != null);
+        return branchNames;
+    }
+
+    /**
+     * Keeps the first page of a repository's branches for the next listBranches call of the same token.
+     */
+    private void rememberRefs(String accessToken, String owner, String repo, JsonNode refs) {
+        ArrayNode names = objectMapper.createArrayNode();
+        for (JsonNode ref : refs.path("nodes")) {
+            names.add(ref.get("name").asText());
+        }
+        prefetchedRefs.put(refsKey(accessToken, owner, repo), new PrefetchedRefs(names, nextCursor(refs)));
+    }
+
+    private static String refsKey(String accessToken, String owner, String repo) {
+        return accessToken + "\u0000" + owner + "/" + repo;
+    }
+
+    /**
+     * Returns the cursor of the next page, or null when the connection is exhausted.
+     */
+    private String nextCursor(JsonNode connection) {
+        JsonNode pageInfo = connection.path("pageInfo");
+        if (pageInfo.path("hasNextPage").asBoolean(false) && pageInfo.hasNonNull("endCursor")) {
+            return pageInfo.get("endCursor").asText();
+        }
+        return null;
+    }
+
+    /**
+     * Posts a query and returns its "data" node, failing on GraphQL-level errors.
+     */
+    private JsonNode execute(String accessToken, String query, ObjectNode variables, String operation) throws IOException {
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("query", query);
+        payload.set("variables", variables);
+
+        RestTemplate restTemplate = new RestTemplate();
+        HttpHeaders headers = buildAuthHeaders(accessToken);
+        HttpEntity<String> entity = new HttpEntity<>(objectMapper.writeValueAsString(payload), headers);
+        ResponseEntity<String> response;
+        try (Span span = TraceContext.span("graphql " + operation)) {
+            response = restTemplate.exchange(githubApiProperties.getGraphqlUrl(), HttpMethod.POST, entity, String.class);
+        }
+        String responseBody = response.getBody();
+        log.info("GraphQL {} response status: {}", operation, response.getStatusCode());
+
+        meterRegistry.counter("github.repository.calls", "backend", "graphql", "operation", operation).increment();
+        if (responseBody != null) {
+            meterRegistry.summary("github.repository.payload.bytes", "backend", "graphql", "operation", operation)
+                    .record(responseBody.getBytes(StandardCharsets.UTF_8).length);
+        }
+
+        JsonNode root = objectMapper.readTree(responseBody);
+        if (root == null) {
+            throw new IOException("Empty GraphQL response for " + operation);
+        }
+        if (root.has("errors") && root.get("errors").size() > 0) {
+            log.error("GraphQL {} returned errors: {}", operation, root.get("errors"));
+            throw new IOException("GraphQL error: " + root.get("errors").get(0).path("message").asText());
+        }
+        return root.path("data");
+    }
+
+    /**
+     * Builds authentication headers for GitHub GraphQL requests.
+     */
+    private HttpHeaders buildAuthHeaders(String accessToken) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "bearer " + accessToken);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        headers.add("X-REQUEST-ID", UUID.randomUUID().toString());
+        headers.add("X-CORRELATION-ID", TraceContext.correlationId());
+        headers.add("X-CLIENT-ID", "UTCAP");
+        return headers;
+    }
+
+    /**
+     * Branches of one repository returned with a repository listing, and where their connection continues.
+     */
+    private static final class PrefetchedRefs {
+        final ArrayNode names;
+        final String nextCursor;
+        final long fetchedAtNanos = System.nanoTime();
+
+        PrefetchedRefs(ArrayNode names, String nextCursor) {
+            this.names = names;
+            this.nextCursor = nextCursor;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.wellsfargo.utcap.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wellsfargo.utcap.model.IdempotencyProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Remembers /ghe/operation results by Idempotency-Key so client and load balancer retries do not
+ * repeat the GitHub round trips. Keys are scoped to the session's access token and kept for a TTL
+ * in a bounded store. A duplicate of an in-flight request waits for the first execution; a duplicate
+ * of a completed one gets the stored response. 5xx results are not stored, so a retry after a
+ * server-side failure runs the operation again.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final IdempotencyProperties idempotencyProperties;
+    private final MeterRegistry meterRegistry;
+
+    // Insertion order is expiry order, since every entry lives for the same TTL from its creation.
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public IdempotencyService(IdempotencyProperties idempotencyProperties, MeterRegistry meterRegistry) {
+        this.idempotencyProperties = idempotencyProperties;
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge("github.idempotency.entries", entries, map -> {
+            synchronized (map) {
+                return map.size();
+            }
+        });
+    }
+
+    /**
+     * Runs the operation once per (access token, key) and returns its response to every duplicate.
+     *
+     * @param payload request body; reusing a key with a different body is rejected with 422
+     */
+    public ResponseEntity<?> execute(String accessToken, String key, Object payload,
+                                     Supplier<ResponseEntity<?>> operation) {
+        return execute(accessToken, key, payload, Long.MAX_VALUE, operation);
+    }
+
+    /**
+     * Like {@link #execute(String, String, Object, Supplier)}, but a duplicate of an in-flight request
+     * waits at most maxWaitMs (and never longer than github.idempotency.in-flight-wait-seconds) before
+     * it is answered with 409, so duplicates cannot hold request threads longer than admission control allows.
+     */
+    public ResponseEntity<?> execute(String accessToken, String key, Object payload, long maxWaitMs,
+                                     Supplier<ResponseEntity<?>> operation) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String fingerprint = fingerprint(payload);
+        String scopedKey = accessToken + "\u0000" + key;
+        long now = System.nanoTime();
+        Entry entry;
+        boolean first = false;
+        synchronized (entries) {
+            evictExpired(now);
+            entry = entries.get(scopedKey);
+            if (entry == null) {
+                entry = new Entry(fingerprint, now + TimeUnit.SECONDS.toNanos(idempotencyProperties.getTtlSeconds()));
+                entries.put(scopedKey, entry);
+                first = true;
+                evictOverflow();
+            }
+        }
+
+        if (first) {
+            return runFirst(scopedKey, entry, operation);
+        }
+        if (!entry.fingerprint.equals(fingerprint)) {
+            record("mismatch");
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body(HEADER + " was already used for a different request");
+        }
+        boolean inFlight = !entry.response.isDone();
+        try {
+            long waitMs = Math.min(maxWaitMs, TimeUnit.SECONDS.toMillis(idempotencyProperties.getInFlightWaitSeconds()));
+            ResponseEntity<?> response = entry.response.get(waitMs, TimeUnit.MILLISECONDS);
+            record(inFlight ? "in_flight_hit" : "hit");
+            log.info("execute: Replaying stored result for {} {}", HEADER, key);
+            return replayed(response);
+        } catch (TimeoutException e) {
+            record("timeout");
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("A request with this " + HEADER + " is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Interrupted while waiting for the original request");
+        } catch (ExecutionException e) {
+            // The first execution threw; it is no longer stored, so let the client retry it.
+            record("in_flight_failure");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Operation failed: " + e.getCause().getMessage());
+        }
+    }
+
+    private ResponseEntity<?> runFirst(String scopedKey, Entry entry, Supplier<ResponseEntity<?>> operation) {
+        record("miss");
+        ResponseEntity<?> response;
+        try {
+            response = operation.get();
+        } catch (RuntimeException e) {
+            forget(scopedKey, entry);
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+        if (response.getStatusCode().is5xxServerError()) {
+            forget(scopedKey, entry);
+        }
+        // Duplicates already waiting share this attempt's response even when it is not stored.
+        entry.response.complete(response);
+        return response;
+    }
+
+    private void forget(String scopedKey, Entry entry) {
+        synchronized (entries) {
+            entries.remove(scopedKey, entry);
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.expiresAtNanos - now > 0) {
+                break;
+            }
+            if (entry.response.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops the oldest completed entries above max-entries. In-flight entries are never dropped,
+     * since their duplicates would otherwise run the operation a second time; while every entry is
+     * in flight the store may briefly hold more than max-entries.
+     */
+    private void evictOverflow() {
+        int excess = entries.size() - Math.max(1, idempotencyProperties.getMaxEntries());
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (excess > 0 && iterator.hasNext()) {
+            if (iterator.next().response.isDone()) {
+                iterator.remove();
+                excess--;
+            }
+        }
+    }
+
+    private static ResponseEntity<?> replayed(ResponseEntity<?> response) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.set(REPLAYED_HEADER, "true");
+        return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+    }
+
+    private String fingerprint(Object payload) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] body = objectMapper.writeValueAsString(payload).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(digest.digest(body));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint request", e);
+        }
+    }
+
+    private void record(String outcome) {
+        meterRegistry.counter("github.idempotency.requests", "outcome", outcome).increment();
+    }
+
+    /**
+     * One remembered key: the fingerprint of its request and the (eventual) response.
+     */
+    private static final class Entry {
+        final String fingerprint;
+        final long expiresAtNanos;
+        final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+
+        Entry(String fingerprint, long expiresAtNanos) {
+            this.fingerprint = fingerprint;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,708 @@
+package com.wellsfargo.utcap.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.wellsfargo.utcap.model.MirrorProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.ThreeWayMerger;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.eclipse.jgit.transport.TrackingRefUpdate;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Write backend that applies createBranch, pushFile and mergeBranch to a local bare mirror
+ * of the repository with JGit, and publishes accumulated commits with one batched git push.
+ * Nothing reaches GitHub until {@link #push} is called for the repository.
+ * <p>
+ * Callers must have push access to the repository (checked once per token). Unpushed commits are kept
+ * per GitHub login under refs/utcap/work/&lt;login&gt;/&lt;branch&gt;, so each user sees their own work on
+ * top of the fetched branches, a new token of the same user (after re-login or a restart) picks that
+ * work up again, and no user's unpushed commits ever block another user's branch, the default branch
+ * included. {@link #discard} drops them explicitly.
+ * <p>
+ * When GitHub rejects a push because the branch moved there, the branch is fetched, the unpushed
+ * commits are merged onto the new remote head and the push is retried. If they conflict, they are
+ * kept under refs/utcap/backup/&lt;login&gt;/&lt;time&gt;/&lt;branch&gt; and the conflict is reported.
+ * <p>
+ * Branches that fetches see created or deleted on GitHub, and branches this service pushes, are
+ * reported to the branch index so it stays current without reloading.
+ */
+@Service
+public class LocalMirrorService {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalMirrorService.class);
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final String REMOTE_PREFIX = Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/";
+    private static final String WORK_PREFIX = "refs/utcap/work/";
+    private static final String BACKUP_PREFIX = "refs/utcap/backup/";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MirrorProperties mirrorProperties;
+    private final GithubContentService githubContentService;
+    private final BranchIndexService branchIndexService;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Mirror> mirrors = new ConcurrentHashMap<>();
+
+    public LocalMirrorService(MirrorProperties mirrorProperties, GithubContentService githubContentService,
+                              BranchIndexService branchIndexService, MeterRegistry meterRegistry) {
+        this.mirrorProperties = mirrorProperties;
+        this.githubContentService = githubContentService;
+        this.branchIndexService = branchIndexService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Creates a branch in the caller's view of the mirror from baseBranch (or the default branch when null).
+     */
+    public String createBranch(String accessToken, String owner, String repo, String newBranch, String baseBranch)
+            throws IOException {
+        Mirror mirror = open(accessToken, owner, repo);
+        String login = loginOf(accessToken);
+        mirror.acquire();
+        try {
+            Repository repository = mirror.repository;
+            if (branchRef(repository, login, newBranch) != null) {
+                log.info("createBranch: Branch {} already exists in mirror.", newBranch);
+                return "Branch " + newBranch + " already exists.";
+            }
+            String baseName = baseBranch != null ? baseBranch : defaultBranch(repository);
+            Ref base = baseName != null ? branchRef(repository, login, baseName) : null;
+            if (base == null || base.getObjectId() == null) {
+                throw new IOException("Base branch not found in mirror: " + (baseBranch != null ? baseBranch : "HEAD"));
+            }
+            updateRef(repository, workRef(login, newBranch), ObjectId.zeroId(), base.getObjectId(),
+                    "branch: Created from " + baseName);
+            return result("createBranch", newBranch, base.getObjectId(), null);
+        } finally {
+            mirror.lock.unlock();
+        }
+    }
+
+    /**
+     * Commits a file to a branch of the caller's view of the mirror. With mergeLines the new lines are
+     * merged into the existing file (deduplicated, as for feeds.lst) instead of replacing it.
+     *
+     * @param base64Content file content, base64 encoded as for the Contents API
+     */
+    public String pushFile(String accessToken, String owner, String repo, String branch, String path,
+                           String base64Content, String commitMessage, boolean mergeLines) throws IOException {
+        Mirror mirror = open(accessToken, owner, repo);
+        String login = loginOf(accessToken);
+        mirror.acquire();
+        try {
+            Repository repository = mirror.repository;
+            Ref ref = requireBranch(repository, login, branch);
+            byte[] content = Base64.getMimeDecoder().decode(base64Content == null ? "" : base64Content);
+            try (RevWalk revWalk = new RevWalk(repository);
+                 ObjectInserter inserter = repository.newObjectInserter()) {
+                RevCommit parent = revWalk.parseCommit(ref.getObjectId());
+                if (mergeLines) {
+                    content = mergeIntoExisting(repository, parent, path, content);
+                }
+                ObjectId blob = inserter.insert(Constants.OBJ_BLOB, content);
+
+                DirCache index = DirCache.newInCore();
+                DirCacheBuilder builder = index.builder();
+                try (ObjectReader reader = repository.newObjectReader()) {
+                    builder.addTree(new byte[0], DirCacheEntry.STAGE_0, reader, parent.getTree());
+                }
+                builder.finish();
+                DirCacheEditor editor = index.editor();
+                editor.add(new DirCacheEditor.PathEdit(path) {
+                    @Override
+                    public void apply(DirCacheEntry entry) {
+                        entry.setFileMode(FileMode.REGULAR_FILE);
+                        entry.setObjectId(blob);
+                    }
+                });
+                editor.finish();
+                ObjectId tree = index.writeTree(inserter);
+                if (tree.equals(parent.getTree())) {
+                    log.info("pushFile: {} on {} is unchanged in mirror.", path, branch);
+                    return result("pushFile", branch, parent, path);
+                }
+
+                ObjectId commit = insertCommit(inserter, tree, commitMessage, parent);
+                updateRef(repository, workRef(login, branch), expectedWork(ref), commit, "commit: " + commitMessage);
+                meterRegistry.counter("github.mirror.commits", "operation", "pushFile").increment();
+                return result("pushFile", branch, commit, path);
+            }
+        } finally {
+            mirror.lock.unlock();
+        }
+    }
+
+    /**
+     * Merges headBranch into baseBranch in the caller's view of the mirror with an in-core recursive merge.
+     */
+    public String mergeBranch(String accessToken, String owner, String repo, String baseBranch, String headBranch,
+                              String commitMessage) throws IOException {
+        Mirror mirror = open(accessToken, owner, repo);
+        String login = loginOf(accessToken);
+        mirror.acquire();
+        try {
+            Repository repository = mirror.repository;
+            Ref baseRef = requireBranch(repository, login, baseBranch);
+            Ref headRef = requireBranch(repository, login, headBranch);
+            try (RevWalk revWalk = new RevWalk(repository);
+                 ObjectInserter inserter = repository.newObjectInserter()) {
+                RevCommit ours = revWalk.parseCommit(baseRef.getObjectId());
+                RevCommit theirs = revWalk.parseCommit(headRef.getObjectId());
+                if (revWalk.isMergedInto(theirs, ours)) {
+                    return result("mergeBranch", baseBranch, ours, null);
+                }
+                ThreeWayMerger merger = MergeStrategy.RECURSIVE.newMerger(repository, true);
+                if (!merger.merge(ours, theirs)) {
+                    throw new IOException("Merge conflict merging " + headBranch + " into " + baseBranch);
+                }
+                String message = commitMessage != null ? commitMessage : "Merge " + headBranch + " into " + baseBranch;
+                ObjectId commit = insertCommit(inserter, merger.getResultTreeId(), message, ours, theirs);
+                updateRef(repository, workRef(login, baseBranch), expectedWork(baseRef), commit, "merge " + headBranch);
+                meterRegistry.counter("github.mirror.commits", "operation", "mergeBranch").increment();
+                return result("mergeBranch", baseBranch, commit, null);
+            }
+        } finally {
+            mirror.lock.unlock();
+        }
+    }
+
+    /**
+     * Lists the entry names of a directory on the default branch, or null if it does not exist.
+     */
+    public List<String> listDirectory(String accessToken, String owner, String repo, String path) throws IOException {
+        Mirror mirror = open(accessToken, owner, repo);
+        mirror.acquire();
+        try {
+            Repository repository = mirror.repository;
+            Ref head = repository.exactRef(Constants.HEAD);
+            if (head == null || head.getObjectId() == null) {
+                return null;
+            }
+            try (RevWalk revWalk = new RevWalk(repository)) {
+                RevCommit commit = revWalk.parseCommit(head.getObjectId());
+                try (TreeWalk directory = TreeWalk.forPath(repository, path, commit.getTree())) {
+                    if (directory == null || !directory.isSubtree()) {
+                        return null;
+                    }
+                    List<String> names = new ArrayList<>();
+                    try (TreeWalk entries = new TreeWalk(repository)) {
+                        entries.addTree(directory.getObjectId(0));
+                        while (entries.next()) {
+                            names.add(entries.getNameString());
+                        }
+                    }
+                    return names;
+                }
+            }
+        } finally {
+            mirror.lock.unlock();
+        }
+    }
+
+    /**
+     * Pushes every branch with the caller's unpushed commits in a single git push. Branches GitHub
+     * rejects because they moved there are merged onto the new remote head and pushed again, up to
+     * github.mirror.push-retries times. Commits that conflict with the remote changes are kept under
+     * a backup ref and the call fails with IllegalStateException naming it.
+     */
+    public String push(String accessToken, String owner, String repo) throws IOException {
+        Mirror mirror = open(accessToken, owner, repo);
+        String login = loginOf(accessToken);
+        mirror.acquire();
+        try {
+            Repository repository = mirror.repository;
+            ObjectNode summary = objectMapper.createObjectNode();
+            summary.put("operation", "pushMirror");
+            ArrayNode updates = summary.putArray("branches");
+            List<String> branches = workBranches(repository, login);
+            List<String> merged = new ArrayList<>();
+            List<String> conflicts = new ArrayList<>();
+            int attempts = 1 + Math.max(0, mirrorProperties.getPushRetries());
+            for (int attempt = 1; !branches.isEmpty(); attempt++) {
+                List<String> rejected = new ArrayList<>();
+                for (Map.Entry<String, RemoteRefUpdate.Status> update
+                        : pushOnce(repository, accessToken, login, branches).entrySet()) {
+                    String branch = update.getKey();
+                    RemoteRefUpdate.Status status = update.getValue();
+                    if (status == RemoteRefUpdate.Status.OK || status == RemoteRefUpdate.Status.UP_TO_DATE) {
+                        published(mirror, login, branch);
+                        ObjectNode node = updates.addObject();
+                        node.put("branch", branch);
+                        node.put("status", status.name());
+                        node.put("merged", merged.contains(branch));
+                    } else {
+                        rejected.add(branch);
+                    }
+                }
+                branches = new ArrayList<>();
+                if (rejected.isEmpty()) {
+                    break;
+                }
+                log.info("push: GitHub rejected {} of {}/{} (attempt {} of {})", rejected, owner, repo, attempt, attempts);
+                if (attempt < attempts) {
+                    fetch(mirror, accessToken);
+                }
+                for (String branch : rejected) {
+                    if (attempt < attempts && mergeOntoRemote(repository, login, branch)) {
+                        merged.add(branch);
+                        branches.add(branch);
+                    } else {
+                        conflicts.add(branch + " (local commits kept at " + backup(repository, login, branch) + ")");
+                    }
+                }
+            }
+            log.info("push: Pushed {} branches of {}/{}, conflicts: {}", updates.size(), owner, repo, conflicts);
+            if (!conflicts.isEmpty()) {
+                throw new IllegalStateException("git push rejected for " + String.join(", ", conflicts)
+                        + ": the unpushed commits could not be merged onto the branch as it now is on GitHub");
+            }
+            return objectMapper.writeValueAsString(summary);
+        } finally {
+            mirror.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the caller's unpushed commits on one branch, or on every branch when branch is null.
+     * Nothing is pushed; the branches fall back to their state on GitHub as of the last fetch.
+     */
+    public String discard(String accessToken, String owner, String repo, String branch) throws IOException {
+        Mirror mirror = open(accessToken, owner, repo);
+        String login = loginOf(accessToken);
+        mirror.acquire();
+        try {
+            Repository repository = mirror.repository;
+            List<String> branches = branch == null ? workBranches(repository, login)
+                    : repository.exactRef(workRef(login, branch)) != null ? List.of(branch) : List.of();
+            ObjectNode summary = objectMapper.createObjectNode();
+            summary.put("operation", "discardMirror");
+            ArrayNode discarded = summary.putArray("branches");
+            for (String name : branches) {
+                deleteRef(repository, workRef(login, name));
+                discarded.add(name);
+            }
+            meterRegistry.counter("github.mirror.discarded").increment(branches.size());
+            log.info("discard: Dropped unpushed commits of {} on {} in {}/{}", login, branches, owner, repo);
+            return objectMapper.writeValueAsString(summary);
+        } finally {
+            mirror.lock.unlock();
+        }
+    }
+
+    /**
+     * Pushes the caller's work refs of the given branches in one git push.
+     *
+     * @return the push status per branch
+     */
+    private Map<String, RemoteRefUpdate.Status> pushOnce(Repository repository, String accessToken, String login,
+                                                         List<String> branches) throws IOException {
+        List<RefSpec> refSpecs = new ArrayList<>();
+        for (String branch : branches) {
+            refSpecs.add(new RefSpec(workRef(login, branch) + ":" + Constants.R_HEADS + branch));
+        }
+        long started = System.nanoTime();
+        Iterable<PushResult> results;
+        try (Git git = Git.wrap(repository)) {
+            results = git.push()
+                    .setRemote(Constants.DEFAULT_REMOTE_NAME)
+                    .setRefSpecs(refSpecs)
+                    .setCredentialsProvider(credentials(accessToken))
+                    .call();
+        } catch (GitAPIException e) {
+            throw new IOException("git push failed: " + e.getMessage(), e);
+        }
+        meterRegistry.timer("github.mirror.push").record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        Map<String, RemoteRefUpdate.Status> statuses = new LinkedHashMap<>();
+        for (PushResult pushResult : results) {
+            for (RemoteRefUpdate update : pushResult.getRemoteUpdates()) {
+                statuses.put(Repository.shortenRefName(update.getRemoteName()), update.getStatus());
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Moves a pushed work ref into the fetched branch state and drops it.
+     */
+    private void published(Mirror mirror, String login, String branch) throws IOException {
+        Repository repository = mirror.repository;
+        Ref work = repository.exactRef(workRef(login, branch));
+        forceRef(repository, REMOTE_PREFIX + branch, work.getObjectId(), "push: published");
+        forceRef(repository, Constants.R_HEADS + branch, work.getObjectId(), "push: published");
+        deleteRef(repository, work.getName());
+        branchIndexService.branchCreated(mirror.owner, mirror.repo, branch);
+    }
+
+    /**
+     * Merges the caller's unpushed commits on a branch GitHub rejected onto the branch's freshly
+     * fetched remote head, so the next push is a fast-forward.
+     *
+     * @return false if the commits conflict with the remote changes
+     */
+    private boolean mergeOntoRemote(Repository repository, String login, String branch) throws IOException {
+        Ref work = repository.exactRef(workRef(login, branch));
+        Ref remote = repository.exactRef(REMOTE_PREFIX + branch);
+        if (remote == null) {
+            // Deleted on GitHub meanwhile: the next push creates it again.
+            return true;
+        }
+        try (RevWalk revWalk = new RevWalk(repository);
+             ObjectInserter inserter = repository.newObjectInserter()) {
+            RevCommit ours = revWalk.parseCommit(work.getObjectId());
+            RevCommit theirs = revWalk.parseCommit(remote.getObjectId());
+            if (revWalk.isMergedInto(theirs, ours)) {
+                return true;
+            }
+            if (revWalk.isMergedInto(ours, theirs)) {
+                updateRef(repository, work.getName(), ours, theirs, "merge: already on " + branch);
+                return true;
+            }
+            ThreeWayMerger merger = MergeStrategy.RECURSIVE.newMerger(repository, true);
+            if (!merger.merge(theirs, ours)) {
+                return false;
+            }
+            ObjectId commit = insertCommit(inserter, merger.getResultTreeId(),
+                    "Merge unpushed mirror commits into " + branch, theirs, ours);
+            updateRef(repository, work.getName(), ours, commit, "merge: onto " + theirs.name());
+            meterRegistry.counter("github.mirror.push.merged").increment();
+            log.info("push: Merged unpushed commits of {} onto the new head {} of {}", login, theirs.name(), branch);
+            return true;
+        }
+    }
+
+    /**
+     * Keeps the caller's unpushed commits of a branch under a backup ref and drops the work ref.
+     *
+     * @return the backup ref
+     */
+    private String backup(Repository repository, String login, String branch) throws IOException {
+        Ref work = repository.exactRef(workRef(login, branch));
+        String backupRef = BACKUP_PREFIX + login + "/" + System.currentTimeMillis() + "/" + branch;
+        forceRef(repository, backupRef, work.getObjectId(), "backup: push conflict");
+        deleteRef(repository, work.getName());
+        meterRegistry.counter("github.mirror.conflicts").increment();
+        log.warn("push: Unpushed commits of {} on {} conflict with GitHub; kept at {}", login, branch, backupRef);
+        return backupRef;
+    }
+
+    /**
+     * Opens (cloning on first use) the mirror of a repository once the caller's push access is confirmed,
+     * and refreshes it from the remote when the fetch interval has passed.
+     */
+    private Mirror open(String accessToken, String owner, String repo) throws IOException {
+        if (!SAFE_NAME.matcher(owner).matches() || !SAFE_NAME.matcher(repo).matches()
+                || owner.startsWith(".") || repo.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid repository: " + owner + "/" + repo);
+        }
+        requirePushAccess(accessToken, owner, repo);
+        Mirror mirror = mirrors.computeIfAbsent(owner + "/" + repo, key -> new Mirror(owner, repo));
+        mirror.acquire();
+        try {
+            if (mirror.repository == null) {
+                File directory = new File(new File(mirrorProperties.getBaseDir(), owner), repo + ".git");
+                if (new File(directory, "HEAD").exists()) {
+                    mirror.repository = Git.open(directory).getRepository();
+                    fetch(mirror, accessToken);
+                } else {
+                    mirror.repository = cloneMirror(accessToken, owner, repo, directory);
+                }
+                mirror.lastFetchNanos = System.nanoTime();
+            } else if (System.nanoTime() - mirror.lastFetchNanos
+                    > TimeUnit.SECONDS.toNanos(mirrorProperties.getFetchIntervalSeconds())) {
+                fetch(mirror, accessToken);
+                mirror.lastFetchNanos = System.nanoTime();
+            }
+            return mirror;
+        } finally {
+            mirror.lock.unlock();
+        }
+    }
+
+    private void requirePushAccess(String accessToken, String owner, String repo) throws IOException {
+        if (!githubContentService.canPush(accessToken, owner, repo)) {
+            throw new HttpClientErrorException(HttpStatus.FORBIDDEN, "No push access to " + owner + "/" + repo);
+        }
+    }
+
+    /**
+     * The GitHub login owning the caller's unpushed work; the same for every token of the user.
+     */
+    private String loginOf(String accessToken) throws IOException {
+        String login = githubContentService.login(accessToken);
+        if (!SAFE_NAME.matcher(login).matches() || login.startsWith(".")) {
+            throw new IOException("Unexpected GitHub login: " + login);
+        }
+        return login;
+    }
+
+    private Repository cloneMirror(String accessToken, String owner, String repo, File directory) throws IOException {
+        String remote = mirrorProperties.getRemoteUrlTemplate().replace("{owner}", owner).replace("{repo}", repo);
+        log.info("Cloning mirror of {} into {}", remote, directory);
+        try {
+            // The Git handle is deliberately not closed: closing it would close the repository we keep open.
+            Git git = Git.cloneRepository()
+                    .setURI(remote)
+                    .setDirectory(directory)
+                    .setBare(true)
+                    .setCredentialsProvider(credentials(accessToken))
+                    .call();
+            return git.getRepository();
+        } catch (GitAPIException e) {
+            throw new IOException("Cloning " + remote + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Fetches into remote-tracking refs and resets the local branches to them; unpushed work lives in
+     * separate work refs and is not touched. Branches the fetch finds created or deleted on GitHub are
+     * reported to the branch index.
+     */
+    private void fetch(Mirror mirror, String accessToken) throws IOException {
+        Repository repository = mirror.repository;
+        FetchResult fetched;
+        try (Git git = Git.wrap(repository)) {
+            fetched = git.fetch()
+                    .setRemote(Constants.DEFAULT_REMOTE_NAME)
+                    .setRefSpecs(new RefSpec("+" + Constants.R_HEADS + "*:" + REMOTE_PREFIX + "*"))
+                    .setRemoveDeletedRefs(true)
+                    .setCredentialsProvider(credentials(accessToken))
+                    .call();
+        } catch (GitAPIException e) {
+            throw new IOException("git fetch failed: " + e.getMessage(), e);
+        }
+        for (TrackingRefUpdate update : fetched.getTrackingRefUpdates()) {
+            String branch = update.getLocalName().substring(REMOTE_PREFIX.length());
+            if (update.getOldObjectId() == null || update.getOldObjectId().equals(ObjectId.zeroId())) {
+                branchIndexService.branchCreated(mirror.owner, mirror.repo, branch);
+            } else if (update.getNewObjectId().equals(ObjectId.zeroId())) {
+                branchIndexService.branchDeleted(mirror.owner, mirror.repo, branch);
+            }
+        }
+        Set<String> remoteBranches = new HashSet<>();
+        for (Ref remote : repository.getRefDatabase().getRefsByPrefix(REMOTE_PREFIX)) {
+            String branch = remote.getName().substring(REMOTE_PREFIX.length());
+            if (branch.equals(Constants.HEAD)) {
+                continue;
+            }
+            remoteBranches.add(branch);
+            Ref local = repository.exactRef(Constants.R_HEADS + branch);
+            if (local == null || !remote.getObjectId().equals(local.getObjectId())) {
+                forceRef(repository, Constants.R_HEADS + branch, remote.getObjectId(), "fetch: sync with remote");
+            }
+        }
+        for (Ref local : repository.getRefDatabase().getRefsByPrefix(Constants.R_HEADS)) {
+            if (!remoteBranches.contains(local.getName().substring(Constants.R_HEADS.length()))) {
+                deleteRef(repository, local.getName());
+            }
+        }
+    }
+
+    /**
+     * The caller's view of a branch: their unpushed work if they have any, otherwise the branch as last fetched.
+     *
+     * @return the ref, or null if the branch exists in neither
+     */
+    private static Ref branchRef(Repository repository, String login, String branch) throws IOException {
+        Ref work = repository.exactRef(workRef(login, branch));
+        return work != null ? work : repository.exactRef(Constants.R_HEADS + branch);
+    }
+
+    /**
+     * The value a work ref must still have when it is updated from the given view: the view itself
+     * if it is the work ref, otherwise none (the work ref is being created).
+     */
+    private static ObjectId expectedWork(Ref view) {
+        return view.getName().startsWith(WORK_PREFIX) ? view.getObjectId() : ObjectId.zeroId();
+    }
+
+    private static String workRef(String login, String branch) {
+        return WORK_PREFIX + login + "/" + branch;
+    }
+
+    private static List<String> workBranches(Repository repository, String login) throws IOException {
+        String prefix = WORK_PREFIX + login + "/";
+        List<String> branches = new ArrayList<>();
+        for (Ref ref : repository.getRefDatabase().getRefsByPrefix(prefix)) {
+            branches.add(ref.getName().substring(prefix.length()));
+        }
+        return branches;
+    }
+
+    private static String defaultBranch(Repository repository) throws IOException {
+        Ref head = repository.exactRef(Constants.HEAD);
+        return head != null && head.isSymbolic() ? Repository.shortenRefName(head.getTarget().getName()) : null;
+    }
+
+    private byte[] mergeIntoExisting(Repository repository, RevCommit parent, String path, byte[] additions)
+            throws IOException {
+        String existing = "";
+        try (TreeWalk file = TreeWalk.forPath(repository, path, parent.getTree())) {
+            if (file != null) {
+                existing = new String(repository.open(file.getObjectId(0)).getBytes(), StandardCharsets.UTF_8);
+            }
+        }
+        List<String> newLines = new ArrayList<>();
+        for (String line : new String(additions, StandardCharsets.UTF_8).split("\\R")) {
+            if (!line.isBlank()) {
+                newLines.add(line.strip());
+            }
+        }
+        List<String> merged = new ArrayList<>();
+        FeedListAggregator.mergeLines(existing, newLines, merged);
+        return (String.join("\n", merged) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private ObjectId insertCommit(ObjectInserter inserter, ObjectId tree, String message, ObjectId... parents)
+            throws IOException {
+        PersonIdent ident = new PersonIdent(mirrorProperties.getCommitterName(), mirrorProperties.getCommitterEmail());
+        CommitBuilder commit = new CommitBuilder();
+        commit.setTreeId(tree);
+        commit.setParentIds(parents);
+        commit.setAuthor(ident);
+        commit.setCommitter(ident);
+        commit.setMessage(message != null ? message : "Update via UTCAP");
+        ObjectId id = inserter.insert(commit);
+        inserter.flush();
+        return id;
+    }
+
+    private void updateRef(Repository repository, String refName, ObjectId expectedOld, ObjectId newId, String reason)
+            throws IOException {
+        RefUpdate update = repository.updateRef(refName);
+        update.setExpectedOldObjectId(expectedOld);
+        update.setNewObjectId(newId);
+        update.setRefLogMessage(reason, false);
+        RefUpdate.Result result = update.update();
+        if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FAST_FORWARD
+                && result != RefUpdate.Result.FORCED) {
+            throw new IOException("Could not update " + refName + ": " + result);
+        }
+    }
+
+    private static void forceRef(Repository repository, String refName, ObjectId newId, String reason)
+            throws IOException {
+        RefUpdate update = repository.updateRef(refName);
+        update.setNewObjectId(newId);
+        update.setForceUpdate(true);
+        update.setRefLogMessage(reason, false);
+        RefUpdate.Result result = update.update();
+        if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FAST_FORWARD
+                && result != RefUpdate.Result.FORCED && result != RefUpdate.Result.NO_CHANGE) {
+            throw new IOException("Could not reset " + refName + ": " + result);
+        }
+    }
+
+    private static void deleteRef(Repository repository, String refName) throws IOException {
+        RefUpdate delete = repository.updateRef(refName);
+        delete.setForceUpdate(true);
+        RefUpdate.Result result = delete.delete();
+        if (result != RefUpdate.Result.FORCED && result != RefUpdate.Result.NO_CHANGE
+                && result != RefUpdate.Result.FAST_FORWARD && result != RefUpdate.Result.NEW) {
+            throw new IOException("Could not delete " + refName + ": " + result);
+        }
+    }
+
+    private static Ref requireBranch(Repository repository, String login, String branch) throws IOException {
+        Ref ref = branchRef(repository, login, branch);
+        if (ref == null) {
+            throw new IOException("Branch " + branch + " does not exist in mirror.");
+        }
+        return ref;
+    }
+
+    private String result(String operation, String branch, ObjectId commit, String path) throws IOException {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("operation", operation);
+        node.put("backend", "mirror");
+        node.put("branch", branch);
+        node.put("commit", commit.name());
+        if (path != null) {
+            node.put("path", path);
+        }
+        node.put("pushed", false);
+        return objectMapper.writeValueAsString(node);
+    }
+
+    private static UsernamePasswordCredentialsProvider credentials(String accessToken) {
+        return new UsernamePasswordCredentialsProvider("x-access-token", accessToken);
+    }
+
+    @PreDestroy
+    public void close() {
+        mirrors.values().forEach(mirror -> {
+            if (mirror.repository != null) {
+                mirror.repository.close();
+            }
+        });
+    }
+
+    /**
+     * A bare mirror and the lock serialising its use.
+     */
+    private static final class Mirror {
+        final String owner;
+        final String repo;
+        final ReentrantLock lock = new ReentrantLock();
+        Repository repository;
+        long lastFetchNanos;
+
+        Mirror(String owner, String repo) {
+            this.owner = owner;
+            this.repo = repo;
+        }
+
+        /**
+         * Takes the lock. Waiting behind another request is not GitHub time, so it is kept out of the bulkhead latency.
+         */
+        void acquire() {
+            long started = System.nanoTime();
+            lock.lock();
+            AdmissionControlService.excludeFromLatency(System.nanoTime() - started);
+        }
+    }
+}
@@ -2,12 +2,17 @@ package com.wellsfargo.utcap.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wellsfargo.utcap.model.GithubApiProperties;
+import com.wellsfargo.utcap.trace.TraceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -16,8 +21,9 @@ import java.util.UUID;
 @Service
 public class PathConstructorService {
 
-    private static final String GHE_API_BASE = "https://api.github.com/";
+    private static final Logger log = LoggerFactory.getLogger(PathConstructorService.class);
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GithubApiProperties githubApiProperties;
 
     // Expected folder names for Type 1 structure.
     private static final Set<String> EXPECTED_FOLDERS = new HashSet<>();
@@ -30,13 +36,17 @@ public class PathConstructorService {
         EXPECTED_FOLDERS.add("ddl");
     }
 
+    public PathConstructorService(GithubApiProperties githubApiProperties) {
+        this.githubApiProperties = githubApiProperties;
+    }
+
     /**
      * Determines the SOR folder structure.
      * If at least one folder in "src/batch/{sor}" matches an expected file type folder, returns 1 (Type 1);
      * if the folder doesn't exist or no expected folder is found, returns 2 (Type 2).
      */
     public int determineStructureType(String owner, String repo, String sor, String accessToken) throws IOException {
-        String url = GHE_API_BASE + "/repos/" + owner + "/" + repo + "/contents/src/batch/" + sor;
+        String url = githubApiProperties.getBaseUrl() + "/repos/" + owner + "/" + repo + "/contents/src/batch/" + sor;
         RestTemplate restTemplate = new RestTemplate();
         HttpHeaders headers = buildAuthHeaders(accessToken);
         HttpEntity<?> entity = new HttpEntity<>(headers);
@@ -69,6 +79,25 @@ public class PathConstructorService {
         return 2;
     }
 
+    /**
+     * Determines the SOR folder structure from an already known listing of "src/batch/{sor}",
+     * e.g. one read from a local mirror. A null listing means the folder does not exist.
+     */
+    public int structureTypeFromEntries(Collection<String> entryNames) {
+        if (entryNames == null) {
+            log.info("structureTypeFromEntries: SOR folder not found. Assuming new SOR (Type 2).");
+            return 2;
+        }
+        for (String name : entryNames) {
+            if (EXPECTED_FOLDERS.contains(name.toLowerCase())) {
+                log.info("structureTypeFromEntries: Detected Type 1 structure.");
+                return 1;
+            }
+        }
+        log.info("structureTypeFromEntries: No expected file type folders found. Defaulting to Type 2.");
+        return 2;
+    }
+
     /**
      * Constructs the target file path based on the SOR structure type, file type, and feed name.
      * The returned path is relative to the repository root.
@@ -156,7 +185,7 @@ public class PathConstructorService {
         headers.setAccept(Collections.singletonList(
                 org.springframework.http.MediaType.parseMediaType("application/vnd.github.v3+json")));
         headers.add("X-REQUEST-ID", UUID.randomUUID().toString());
-        headers.add("X-CORRELATION-ID", UUID.randomUUID().toString());
+        headers.add("X-CORRELATION-ID", TraceContext.correlationId());
         headers.add("X-CLIENT-ID", "UTCAP");
         return headers;
     }
@@ -0,0 +1,40 @@
+package com.wellsfargo.utcap.service;
+
+import com.wellsfargo.utcap.model.GitWriteProperties;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks for file writes, keyed by (owner/repo, branch, path).
+ * Writers to the same file on the same branch always map to the same stripe,
+ * so they are serialised within this node; unrelated files rarely contend.
+ */
+@Service
+public class PathLockService {
+
+    private final Lock[] stripes;
+
+    public PathLockService(GitWriteProperties gitWriteProperties) {
+        int count = Math.max(1, gitWriteProperties.getLockStripes());
+        this.stripes = new Lock[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Returns the lock guarding writes to the given file on the given branch.
+     */
+    public Lock lockFor(String owner, String repo, String branch, String path) {
+        String key = owner + "/" + repo + "@" + branch + ":" + path;
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return stripes[Math.floorMod(hash, stripes.length)];
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+}
@@ -0,0 +1,287 @@
+package com.wellsfargo.utcap.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.wellsfargo.utcap.model.GithubApiProperties;
+import com.wellsfargo.utcap.model.PrewarmProperties;
+import com.wellsfargo.utcap.trace.TraceContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.*;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Prefetches a user's repositories and the branches of their most recently used repositories
+ * right after login, so the UI's first /ghe/repositories and /ghe/branches calls do not wait on GitHub.
+ * A prefetched result is handed out once and then dropped; later polls go to GitHub as before.
+ */
+@Service
+public class PrewarmService {
+
+    private static final Logger log = LoggerFactory.getLogger(PrewarmService.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RepositoryBackend repositoryBackend;
+    private final GithubApiProperties githubApiProperties;
+    private final PrewarmProperties prewarmProperties;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+
+    // access token -> results prefetched for it
+    private final Map<String, TokenPrefetch> prefetches;
+    // access token -> GitHub login, learned while prewarming
+    private final Map<String, String> logins;
+    // GitHub login -> "owner/repo" most recently used first
+    private final Map<String, Deque<String>> recentRepositories;
+
+    public PrewarmService(RepositoryBackend repositoryBackend,
+                          GithubApiProperties githubApiProperties,
+                          PrewarmProperties prewarmProperties,
+                          MeterRegistry meterRegistry) {
+        this.repositoryBackend = repositoryBackend;
+        this.githubApiProperties = githubApiProperties;
+        this.prewarmProperties = prewarmProperties;
+        this.meterRegistry = meterRegistry;
+
+        int maxTokens = Math.max(1, prewarmProperties.getMaxTokens());
+        this.prefetches = boundedMap(maxTokens);
+        this.logins = boundedMap(maxTokens);
+        this.recentRepositories = boundedMap(maxTokens);
+
+        int threads = Math.max(1, prewarmProperties.getThreads());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, prewarmProperties.getQueueCapacity())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "prewarm-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        meterRegistry.gauge("github.prewarm.queue", executor, e -> e.getQueue().size());
+    }
+
+    /**
+     * Starts background prefetching for a freshly issued access token. Never blocks the caller;
+     * if the executor is saturated the prewarm is skipped. A prefetch is only published once its
+     * task has been accepted, so a skipped prewarm never leaves a caller waiting on it.
+     */
+    public void prewarm(String accessToken) {
+        if (!prewarmProperties.isEnabled()) {
+            return;
+        }
+        TokenPrefetch tokenPrefetch = new TokenPrefetch();
+        Prefetch repositories = new Prefetch(ttlNanos());
+        try {
+            executor.execute(() -> run(repositories, () -> repositoryBackend.listRepositories(accessToken)));
+        } catch (RejectedExecutionException e) {
+            meterRegistry.counter("github.prewarm.rejected").increment();
+            log.warn("prewarm: Executor saturated, skipping prewarm.");
+            return;
+        }
+        tokenPrefetch.repositories.set(repositories);
+        prefetches.put(accessToken, tokenPrefetch);
+        try {
+            executor.execute(() -> prefetchRecentBranches(accessToken, tokenPrefetch));
+        } catch (RejectedExecutionException e) {
+            meterRegistry.counter("github.prewarm.rejected").increment();
+            log.warn("prewarm: Executor saturated, skipping branch prewarm.");
+        }
+    }
+
+    /**
+     * Returns the user's pushable repositories, from the prewarmed result if one is available.
+     */
+    public ArrayNode listRepositories(String accessToken) throws IOException {
+        TokenPrefetch tokenPrefetch = prefetches.get(accessToken);
+        Prefetch prefetch = tokenPrefetch == null ? null : tokenPrefetch.repositories.getAndSet(null);
+        ArrayNode repositories = claim(prefetch, "repositories");
+        return repositories != null ? repositories : repositoryBackend.listRepositories(accessToken);
+    }
+
+    /**
+     * Returns the branches of a repository, from the prewarmed result if one is available,
+     * and remembers the repository as recently used for the next login.
+     */
+    public ArrayNode listBranches(String accessToken, String owner, String repo) throws IOException {
+        String key = owner + "/" + repo;
+        recordUsage(accessToken, key);
+        TokenPrefetch tokenPrefetch = prefetches.get(accessToken);
+        Prefetch prefetch = tokenPrefetch == null ? null : tokenPrefetch.branches.remove(key);
+        ArrayNode branches = claim(prefetch, "branches");
+        return branches != null ? branches : repositoryBackend.listBranches(accessToken, owner, repo);
+    }
+
+    /**
+     * Resolves the login behind the token and prefetches branches of that user's recent repositories.
+     */
+    private void prefetchRecentBranches(String accessToken, TokenPrefetch tokenPrefetch) {
+        String login;
+        try {
+            login = lookupLogin(accessToken);
+        } catch (Exception e) {
+            log.warn("prewarm: Could not resolve login: {}", e.getMessage());
+            return;
+        }
+        logins.put(accessToken, login);
+        Deque<String> recent = recentRepositories.get(login);
+        if (recent == null) {
+            return;
+        }
+        List<String> keys;
+        synchronized (recent) {
+            keys = new ArrayList<>(recent);
+        }
+        for (String key : keys.subList(0, Math.min(keys.size(), prewarmProperties.getRecentRepositories()))) {
+            String[] ownerAndRepo = key.split("/", 2);
+            Prefetch branches = new Prefetch(ttlNanos());
+            try {
+                executor.execute(() -> run(branches,
+                        () -> repositoryBackend.listBranches(accessToken, ownerAndRepo[0], ownerAndRepo[1])));
+            } catch (RejectedExecutionException e) {
+                meterRegistry.counter("github.prewarm.rejected").increment();
+                continue;
+            }
+            tokenPrefetch.branches.put(key, branches);
+        }
+    }
+
+    private void recordUsage(String accessToken, String key) {
+        String login = logins.get(accessToken);
+        if (login == null) {
+            return;
+        }
+        Deque<String> recent = recentRepositories.computeIfAbsent(login, k -> new ArrayDeque<>());
+        synchronized (recent) {
+            recent.remove(key);
+            recent.addFirst(key);
+            while (recent.size() > Math.max(1, prewarmProperties.getRecentRepositories())) {
+                recent.removeLast();
+            }
+        }
+    }
+
+    /**
+     * Hands out a prefetched result, waiting briefly (github.prewarm.claim-wait-ms) if it is still in flight;
+     * a prefetch that takes longer counts as a miss and the caller goes to GitHub itself.
+     * Records a hit with the GitHub time the caller did not have to spend, or a miss.
+     */
+    private ArrayNode claim(Prefetch prefetch, String kind) {
+        if (prefetch == null || prefetch.isExpired()) {
+            meterRegistry.counter("github.prewarm.lookups", "kind", kind, "result", "miss").increment();
+            return null;
+        }
+        long waitStarted = System.nanoTime();
+        ArrayNode value;
+        try {
+            long waitNanos = Math.min(prefetch.remainingNanos(),
+                    TimeUnit.MILLISECONDS.toNanos(prewarmProperties.getClaimWaitMs()));
+            value = prefetch.result.get(waitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            meterRegistry.counter("github.prewarm.lookups", "kind", kind, "result", "miss").increment();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            meterRegistry.counter("github.prewarm.lookups", "kind", kind, "result", "miss").increment();
+            return null;
+        }
+        long waited = System.nanoTime() - waitStarted;
+        meterRegistry.counter("github.prewarm.lookups", "kind", kind, "result", "hit").increment();
+        meterRegistry.timer("github.prewarm.time.saved", "kind", kind)
+                .record(Math.max(0, prefetch.durationNanos - waited), TimeUnit.NANOSECONDS);
+        return value;
+    }
+
+    private void run(Prefetch prefetch, Callable<ArrayNode> fetch) {
+        try {
+            ArrayNode value = fetch.call();
+            prefetch.durationNanos = System.nanoTime() - prefetch.startedNanos;
+            prefetch.result.complete(value);
+        } catch (Exception e) {
+            log.warn("prewarm: Prefetch failed: {}", e.getMessage());
+            prefetch.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Retrieves the login of the user owning the access token.
+     */
+    private String lookupLogin(String accessToken) throws IOException {
+        String url = githubApiProperties.getBaseUrl() + "/user";
+        RestTemplate restTemplate = new RestTemplate();
+        HttpEntity<?> entity = new HttpEntity<>(buildAuthHeaders(accessToken));
+        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+        JsonNode root = objectMapper.readTree(response.getBody());
+        return root.get("login").asText();
+    }
+
+    private long ttlNanos() {
+        return TimeUnit.SECONDS.toNanos(prewarmProperties.getTtlSeconds());
+    }
+
+    private static <K, V> Map<K, V> boundedMap(int maxEntries) {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Builds authentication headers for GitHub API requests.
+     */
+    private HttpHeaders buildAuthHeaders(String accessToken) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "token " + accessToken);
+        headers.setAccept(Collections.singletonList(MediaType.parseMediaType("application/vnd.github.v3+json")));
+        headers.add("X-REQUEST-ID", UUID.randomUUID().toString());
+        headers.add("X-CORRELATION-ID", TraceContext.correlationId());
+        headers.add("X-CLIENT-ID", "UTCAP");
+        return headers;
+    }
+
+    /**
+     * Everything prefetched for one access token.
+     */
+    private static final class TokenPrefetch {
+        final AtomicReference<Prefetch> repositories = new AtomicReference<>();
+        final Map<String, Prefetch> branches = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * One prefetched listing; the result may still be in flight when it is claimed.
+     */
+    private static final class Prefetch {
+        final CompletableFuture<ArrayNode> result = new CompletableFuture<>();
+        final long startedNanos = System.nanoTime();
+        final long expiresAtNanos;
+        volatile long durationNanos;
+
+        Prefetch(long ttlNanos) {
+            this.expiresAtNanos = startedNanos + ttlNanos;
+        }
+
+        boolean isExpired() {
+            return remainingNanos() <= 0;
+        }
+
+        long remainingNanos() {
+            return expiresAtNanos - System.nanoTime();
+        }
+    }
+}
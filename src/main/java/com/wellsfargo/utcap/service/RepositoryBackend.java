@@ -0,0 +1,22 @@
+package com.wellsfargo.utcap.service;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import java.io.IOException;
+
+/**
+ * Source of repository and branch listings for RepositoryController.
+ * The implementation is chosen with github.api.repository-backend ("rest" or "graphql").
+ */
+public interface RepositoryBackend {
+
+    /**
+     * Lists repositories the user can push to, as an array of {"name", "owner"} objects.
+     */
+    ArrayNode listRepositories(String accessToken) throws IOException;
+
+    /**
+     * Lists branch names of the given repository.
+     */
+    ArrayNode listBranches(String accessToken, String owner, String repo) throws IOException;
+}
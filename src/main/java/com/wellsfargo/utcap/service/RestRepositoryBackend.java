@@ -0,0 +1,128 @@
+package com.wellsfargo.utcap.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.wellsfargo.utcap.model.GithubApiProperties;
+import com.wellsfargo.utcap.trace.Span;
+import com.wellsfargo.utcap.trace.TraceContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.*;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * Repository listing over the REST API (/user/repos and /repos/{owner}/{repo}/branches).
+ */
+@Service
+@ConditionalOnProperty(prefix = "github.api", name = "repository-backend", havingValue = "rest", matchIfMissing = true)
+public class RestRepositoryBackend implements RepositoryBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(RestRepositoryBackend.class);
+    // Largest page GitHub serves for /user/repos and /branches.
+    private static final int PAGE_SIZE = 100;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GithubApiProperties githubApiProperties;
+    private final MeterRegistry meterRegistry;
+
+    public RestRepositoryBackend(GithubApiProperties githubApiProperties, MeterRegistry meterRegistry) {
+        this.githubApiProperties = githubApiProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ArrayNode listRepositories(String accessToken) throws IOException {
+        ArrayNode filteredRepos = objectMapper.createArrayNode();
+        // Walk every page (GitHub serves 30 repositories per page by default); a short page ends the listing
+        for (int page = 1; ; page++) {
+            String url = githubApiProperties.getBaseUrl() + "/user/repos?per_page=" + PAGE_SIZE + "&page=" + page;
+            String responseBody = get(url, accessToken, "repositories");
+
+            JsonNode rootArray = objectMapper.readTree(responseBody);
+            if (!rootArray.isArray()) {
+                break;
+            }
+            // Filter repositories where the user has push permissions
+            for (JsonNode repoNode : rootArray) {
+                JsonNode permissions = repoNode.get("permissions");
+                if (permissions != null && permissions.get("push").asBoolean()) {
+                    ObjectNode simpleRepo = objectMapper.createObjectNode();
+                    simpleRepo.put("name", repoNode.get("name").asText());
+                    simpleRepo.put("owner", repoNode.get("owner").get("login").asText());
+                    filteredRepos.add(simpleRepo);
+                }
+            }
+            if (rootArray.size() < PAGE_SIZE) {
+                break;
+            }
+        }
+        return filteredRepos;
+    }
+
+    @Override
+    public ArrayNode listBranches(String accessToken, String owner, String repo) throws IOException {
+        ArrayNode branchNames = objectMapper.createArrayNode();
+        // Walk every page; a short page means the listing is complete
+        for (int page = 1; ; page++) {
+            String url = githubApiProperties.getBaseUrl() + "/repos/" + owner + "/" + repo + "/branches"
+                    + "?per_page=" + PAGE_SIZE + "&page=" + page;
+            String responseBody = get(url, accessToken, "branches");
+
+            JsonNode root = objectMapper.readTree(responseBody);
+            if (!root.isArray()) {
+                break;
+            }
+            // Iterate through the array and add each branch name
+            for (JsonNode branch : root) {
+                branchNames.add(branch.get("name").asText());
+            }
+            if (root.size() < PAGE_SIZE) {
+                break;
+            }
+        }
+        return branchNames;
+    }
+
+    /**
+     * Executes a GET and records the call and its payload size for comparison with the GraphQL backend.
+     */
+    private String get(String url, String accessToken, String operation) {
+        RestTemplate restTemplate = new RestTemplate();
+        HttpEntity<?> entity = new HttpEntity<>(buildAuthHeaders(accessToken));
+        ResponseEntity<String> response;
+        try (Span span = TraceContext.span("rest " + operation)) {
+            response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+        }
+        String responseBody = response.getBody();
+        log.info("REST {} response status: {}", operation, response.getStatusCode());
+
+        meterRegistry.counter("github.repository.calls", "backend", "rest", "operation", operation).increment();
+        if (responseBody != null) {
+            meterRegistry.summary("github.repository.payload.bytes", "backend", "rest", "operation", operation)
+                    .record(responseBody.getBytes(StandardCharsets.UTF_8).length);
+        }
+        return responseBody;
+    }
+
+    /**
+     * Builds authentication headers for GitHub API requests.
+     */
+    private HttpHeaders buildAuthHeaders(String accessToken) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "token " + accessToken);
+        headers.setAccept(Collections.singletonList(MediaType.parseMediaType("application/vnd.github.v3+json")));
+        headers.add("X-REQUEST-ID", UUID.randomUUID().toString());
+        headers.add("X-CORRELATION-ID", TraceContext.correlationId());
+        headers.add("X-CLIENT-ID", "UTCAP");
+        return headers;
+    }
+}
@@ -0,0 +1,95 @@
+package com.wellsfargo.utcap.service;
+
+import com.wellsfargo.utcap.model.GitWriteProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries Contents API writes that lose the SHA race to another writer (possibly on another node).
+ * Each retry re-runs the whole read-and-write attempt after a short jittered backoff, and is counted
+ * in github.write.sha.retries; giving up is counted in github.write.sha.retries.exhausted.
+ */
+@Service
+public class ShaRetryService {
+
+    private static final Logger log = LoggerFactory.getLogger(ShaRetryService.class);
+    private final GitWriteProperties gitWriteProperties;
+    private final MeterRegistry meterRegistry;
+
+    public ShaRetryService(GitWriteProperties gitWriteProperties, MeterRegistry meterRegistry) {
+        this.gitWriteProperties = gitWriteProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs the attempt, repeating it up to github.write.max-sha-retries times while it fails with a SHA conflict.
+     *
+     * @param path the file being written, for logging
+     */
+    public <T> T run(String path, Attempt<T> attempt) throws IOException {
+        int maxRetries = Math.max(0, gitWriteProperties.getMaxShaRetries());
+        for (int retry = 0; ; retry++) {
+            try {
+                return attempt.run();
+            } catch (HttpClientErrorException e) {
+                if (!isShaConflict(e)) {
+                    throw e;
+                }
+                if (retry >= maxRetries) {
+                    meterRegistry.counter("github.write.sha.retries.exhausted").increment();
+                    log.warn("SHA conflict on {} after {} retries, giving up.", path, retry);
+                    throw e;
+                }
+                meterRegistry.counter("github.write.sha.retries").increment();
+                log.info("SHA conflict on {} (attempt {}). Re-reading and retrying.", path, retry + 1);
+                backoff(retry + 1);
+            }
+        }
+    }
+
+    /**
+     * GitHub answers 409 when the supplied SHA no longer matches the branch head for the file,
+     * and 422 ("sha" wasn't supplied) when a file appeared between our lookup and an add.
+     */
+    public static boolean isShaConflict(HttpClientErrorException e) {
+        if (e.getStatusCode() == HttpStatus.CONFLICT) {
+            return true;
+        }
+        return e.getStatusCode() == HttpStatus.UNPROCESSABLE_ENTITY
+                && e.getResponseBodyAsString().contains("sha");
+    }
+
+    /**
+     * Sleeps a short, jittered, linearly growing interval before the next SHA retry.
+     * The sleep is not GitHub time, so it is left out of the caller's bulkhead latency.
+     */
+    private void backoff(int attempt) {
+        long base = gitWriteProperties.getRetryBackoffMs() * attempt;
+        if (base <= 0) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            Thread.sleep(base + ThreadLocalRandom.current().nextLong(base));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            AdmissionControlService.excludeFromLatency(System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * One complete read-and-write attempt.
+     */
+    @FunctionalInterface
+    public interface Attempt<T> {
+        T run() throws IOException;
+    }
+}
@@ -0,0 +1,33 @@
+package com.wellsfargo.utcap.trace;
+
+/**
+ * A timed section of a request, closed with try-with-resources:
+ * <pre>
+ * try (Span span = TraceContext.span("sha lookup")) { ... }
+ * </pre>
+ */
+public final class Span implements AutoCloseable {
+
+    // Returned when no trace is active on the current thread; closing it does nothing.
+    static final Span NOOP = new Span(null, null, 0);
+
+    private final Trace trace;
+    private final String name;
+    private final long startNanos;
+    private boolean closed;
+
+    Span(Trace trace, String name, long startNanos) {
+        this.trace = trace;
+        this.name = name;
+        this.startNanos = startNanos;
+    }
+
+    @Override
+    public void close() {
+        if (trace == null || closed) {
+            return;
+        }
+        closed = true;
+        trace.addSpan(name, startNanos, System.nanoTime());
+    }
+}
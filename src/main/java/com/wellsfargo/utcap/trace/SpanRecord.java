@@ -0,0 +1,34 @@
+package com.wellsfargo.utcap.trace;
+
+/**
+ * A finished span, positioned relative to the start of its request.
+ */
+public class SpanRecord {
+    private final String name;
+    private final String thread;
+    private final double startOffsetMillis;
+    private final double durationMillis;
+
+    SpanRecord(String name, String thread, double startOffsetMillis, double durationMillis) {
+        this.name = name;
+        this.thread = thread;
+        this.startOffsetMillis = startOffsetMillis;
+        this.durationMillis = durationMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public double getStartOffsetMillis() {
+        return startOffsetMillis;
+    }
+
+    public double getDurationMillis() {
+        return durationMillis;
+    }
+}
@@ -0,0 +1,79 @@
+package com.wellsfargo.utcap.trace;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Timeline of one inbound request: its correlation ID and the spans recorded while serving it.
+ */
+public class Trace {
+    private final String correlationId;
+    private final String method;
+    private final String path;
+    private final Instant startedAt = Instant.now();
+    private final long startNanos = System.nanoTime();
+    private final List<SpanRecord> spans = new ArrayList<>();
+    private volatile long durationNanos = -1;
+    private volatile int status;
+
+    public Trace(String correlationId, String method, String path) {
+        this.correlationId = correlationId;
+        this.method = method;
+        this.path = path;
+    }
+
+    Span startSpan(String name) {
+        return new Span(this, name, System.nanoTime());
+    }
+
+    void addSpan(String name, long spanStartNanos, long spanEndNanos) {
+        SpanRecord record = new SpanRecord(name, Thread.currentThread().getName(),
+                (spanStartNanos - startNanos) / 1_000_000.0, (spanEndNanos - spanStartNanos) / 1_000_000.0);
+        synchronized (spans) {
+            spans.add(record);
+        }
+    }
+
+    public void finish(int status) {
+        this.status = status;
+        this.durationNanos = System.nanoTime() - startNanos;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getStartedAt() {
+        return startedAt.toString();
+    }
+
+    public double getDurationMillis() {
+        return durationNanos < 0 ? -1 : durationNanos / 1_000_000.0;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Spans ordered by start time, i.e. as a waterfall.
+     */
+    public List<SpanRecord> getSpans() {
+        List<SpanRecord> copy;
+        synchronized (spans) {
+            copy = new ArrayList<>(spans);
+        }
+        copy.sort(Comparator.comparingDouble(SpanRecord::getStartOffsetMillis));
+        return copy;
+    }
+}
@@ -0,0 +1,40 @@
+package com.wellsfargo.utcap.trace;
+
+import java.util.UUID;
+
+/**
+ * Holds the trace of the inbound request being served on the current thread.
+ * Outbound GitHub calls take their X-CORRELATION-ID from here, so every call made
+ * for one request carries the same ID.
+ */
+public final class TraceContext {
+
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+
+    private TraceContext() {
+    }
+
+    static void begin(Trace trace) {
+        CURRENT.set(trace);
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Correlation ID of the current request; outside a request (background work) a fresh ID.
+     */
+    public static String correlationId() {
+        Trace trace = CURRENT.get();
+        return trace != null ? trace.getCorrelationId() : UUID.randomUUID().toString();
+    }
+
+    /**
+     * Starts a span on the current request's trace, or a no-op span if there is none.
+     */
+    public static Span span(String name) {
+        Trace trace = CURRENT.get();
+        return trace != null ? trace.startSpan(name) : Span.NOOP;
+    }
+}
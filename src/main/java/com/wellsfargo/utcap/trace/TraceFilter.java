@@ -0,0 +1,56 @@
+package com.wellsfargo.utcap.trace;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Opens a trace for every /ghe request. The correlation ID is taken from an incoming
+ * X-CORRELATION-ID header when it looks sane, otherwise generated, and echoed on the response.
+ */
+@Component
+public class TraceFilter extends OncePerRequestFilter {
+
+    private static final String CORRELATION_HEADER = "X-CORRELATION-ID";
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    private final TraceRecorder traceRecorder;
+
+    public TraceFilter(TraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.startsWith("/ghe/") || path.startsWith("/ghe/debug/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String incoming = request.getHeader(CORRELATION_HEADER);
+        String correlationId = incoming != null && VALID_ID.matcher(incoming).matches()
+                ? incoming : UUID.randomUUID().toString();
+        Trace trace = new Trace(correlationId, request.getMethod(), request.getRequestURI());
+        response.setHeader(CORRELATION_HEADER, correlationId);
+        TraceContext.begin(trace);
+        MDC.put("correlationId", correlationId);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            trace.finish(response.getStatus());
+            traceRecorder.record(trace);
+            MDC.remove("correlationId");
+            TraceContext.end();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.wellsfargo.utcap.trace;
+
+import com.wellsfargo.utcap.model.TraceProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size ring buffer of the most recently finished request traces.
+ */
+@Component
+public class TraceRecorder {
+
+    private final AtomicReferenceArray<Trace> buffer;
+    private final AtomicLong written = new AtomicLong();
+
+    public TraceRecorder(TraceProperties traceProperties) {
+        this.buffer = new AtomicReferenceArray<>(Math.max(1, traceProperties.getBufferSize()));
+    }
+
+    public void record(Trace trace) {
+        long slot = written.getAndIncrement();
+        buffer.set((int) (slot % buffer.length()), trace);
+    }
+
+    /**
+     * Returns up to limit traces, newest first.
+     */
+    public List<Trace> recent(int limit) {
+        long newest = written.get() - 1;
+        int count = (int) Math.min(Math.min(limit, buffer.length()), newest + 1);
+        List<Trace> traces = new ArrayList<>(Math.max(0, count));
+        for (long i = newest; i > newest - count; i--) {
+            Trace trace = buffer.get((int) (i % buffer.length()));
+            if (trace != null) {
+                traces.add(trace);
+            }
+        }
+        return traces;
+    }
+}
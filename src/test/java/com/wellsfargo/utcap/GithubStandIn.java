@@ -0,0 +1,85 @@
+package com.wellsfargo.utcap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.wellsfargo.utcap.model.GithubApiProperties;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP stand-in for the GitHub API shared by the tests. Tests register handlers per path
+ * prefix (the longest matching prefix wins), start it, and point GithubApiProperties at {@link #baseUrl()}.
+ */
+public final class GithubStandIn implements AutoCloseable {
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	private final HttpServer server;
+	private final ExecutorService threads;
+
+	/**
+	 * @param threads number of requests the stand-in answers concurrently
+	 */
+	public GithubStandIn(int threads) throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.threads = Executors.newFixedThreadPool(threads);
+		this.server.setExecutor(this.threads);
+	}
+
+	public GithubStandIn handle(String pathPrefix, HttpHandler handler) {
+		server.createContext(pathPrefix, handler);
+		return this;
+	}
+
+	public GithubStandIn start() {
+		server.start();
+		return this;
+	}
+
+	public String baseUrl() {
+		return "http://localhost:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * API properties whose base URL points at this stand-in.
+	 */
+	public GithubApiProperties apiProperties() {
+		GithubApiProperties apiProperties = new GithubApiProperties();
+		apiProperties.setBaseUrl(baseUrl());
+		return apiProperties;
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		threads.shutdownNow();
+	}
+
+	public static void respond(HttpExchange exchange, JsonNode body) throws IOException {
+		respond(exchange, 200, body);
+	}
+
+	public static void respond(HttpExchange exchange, int status, JsonNode body) throws IOException {
+		respond(exchange, status, OBJECT_MAPPER.writeValueAsString(body));
+	}
+
+	/**
+	 * Sends a JSON response with the given status and closes the exchange.
+	 */
+	public static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
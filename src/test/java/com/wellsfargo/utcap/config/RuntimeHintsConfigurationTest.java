@@ -0,0 +1,41 @@
+package com.wellsfargo.utcap.config;
+
+import com.wellsfargo.utcap.dto.BranchPage;
+import com.wellsfargo.utcap.dto.GitOperationRequest;
+import com.wellsfargo.utcap.trace.SpanRecord;
+import com.wellsfargo.utcap.trace.Trace;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the native-image hints against the types and files they are meant to cover.
+ */
+class RuntimeHintsConfigurationTest {
+
+	@Test
+	void registersTheApplicationConfigurationFile() {
+		RuntimeHints hints = new RuntimeHints();
+		new RuntimeHintsConfiguration.ResourceHints().registerHints(hints, getClass().getClassLoader());
+
+		assertTrue(RuntimeHintsPredicates.resource().forResource("application.properties").test(hints));
+		assertNotNull(getClass().getClassLoader().getResource("application.properties"),
+				"the hinted file must exist at the classpath root");
+	}
+
+	@Test
+	void registersTypesSerializedByJackson() {
+		Class<?>[] types = RuntimeHintsConfiguration.class.getAnnotation(RegisterReflectionForBinding.class).value();
+		RuntimeHints hints = new RuntimeHints();
+		new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), types);
+
+		for (Class<?> type : new Class<?>[]{GitOperationRequest.class, BranchPage.class, Trace.class, SpanRecord.class}) {
+			assertTrue(RuntimeHintsPredicates.reflection().onType(type).test(hints), type + " has no reflection hint");
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.wellsfargo.utcap.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConditionalJsonResponseTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void repeatedPollWithEtagGetsNotModified() throws IOException {
+		ArrayNode branches = branches(5);
+		ResponseEntity<?> first = ConditionalJsonResponse.of(branches, new MockHttpServletRequest());
+		String etag = first.getHeaders().getETag();
+		assertEquals(HttpStatus.OK, first.getStatusCode());
+		assertNotNull(etag);
+		assertTrue(first.getHeaders().getCacheControl().contains("private"));
+
+		MockHttpServletRequest poll = new MockHttpServletRequest();
+		poll.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+		ResponseEntity<?> second = ConditionalJsonResponse.of(branches(5), poll);
+		assertEquals(HttpStatus.NOT_MODIFIED, second.getStatusCode());
+		assertNull(second.getBody());
+
+		MockHttpServletRequest changed = new MockHttpServletRequest();
+		changed.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+		assertEquals(HttpStatus.OK, ConditionalJsonResponse.of(branches(6), changed).getStatusCode());
+	}
+
+	@Test
+	void largeBodiesAreGzippedAndStillValidate() throws IOException {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+		ResponseEntity<?> response = ConditionalJsonResponse.of(branches(500), request);
+		assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+
+		// A client that cached the uncompressed form still revalidates against the gzipped one.
+		String plainEtag = ConditionalJsonResponse.of(branches(500), new MockHttpServletRequest()).getHeaders().getETag();
+		MockHttpServletRequest poll = new MockHttpServletRequest();
+		poll.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+		poll.addHeader(HttpHeaders.IF_NONE_MATCH, plainEtag);
+		assertEquals(HttpStatus.NOT_MODIFIED, ConditionalJsonResponse.of(branches(500), poll).getStatusCode());
+	}
+
+	private ArrayNode branches(int count) {
+		ArrayNode names = objectMapper.createArrayNode();
+		for (int i = 0; i < count; i++) {
+			names.add("feature/branch-" + i);
+		}
+		return names;
+	}
+
+}
@@ -0,0 +1,296 @@
+package com.wellsfargo.utcap.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.wellsfargo.utcap.GithubStandIn;
+import com.wellsfargo.utcap.dto.GitOperationRequest;
+import com.wellsfargo.utcap.model.AdmissionProperties;
+import com.wellsfargo.utcap.model.FeedListProperties;
+import com.wellsfargo.utcap.model.GitWriteProperties;
+import com.wellsfargo.utcap.model.GithubApiProperties;
+import com.wellsfargo.utcap.model.MirrorProperties;
+import com.wellsfargo.utcap.service.AdmissionControlService;
+import com.wellsfargo.utcap.service.FeedListAggregator;
+import com.wellsfargo.utcap.service.GithubContentService;
+import com.wellsfargo.utcap.service.PathConstructorService;
+import com.wellsfargo.utcap.service.PathLockService;
+import com.wellsfargo.utcap.service.ShaRetryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.wellsfargo.utcap.GithubStandIn.respond;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives pushFile against a local stand-in for the Contents API that enforces SHA matching
+ * like GitHub and can simulate another node committing to the file between our read and write.
+ * The stand-in grants every token push access to the repository.
+ */
+class GitOperationsControllerTest {
+
+	private static final String SOR_DIRECTORY = "src/batch/sor1";
+	private static final String PATH = "src/batch/sor1/config/dci/json/feed1.json";
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final AtomicInteger commits = new AtomicInteger();
+	// Number of upcoming PUTs preceded by a commit from "another node".
+	private final AtomicInteger foreignCommits = new AtomicInteger();
+	private final AtomicInteger structureLookups = new AtomicInteger();
+	private GithubStandIn github;
+	private GithubApiProperties apiProperties;
+	private GitWriteProperties writeProperties;
+	private SimpleMeterRegistry meterRegistry;
+	private volatile String content;
+	private volatile int version;
+
+	@BeforeEach
+	void startStandIn() throws IOException {
+		github = new GithubStandIn(16);
+		github.handle("/repos/acme/feeds/contents/", this::handleContents);
+		github.handle("/repos/acme/feeds", exchange -> {
+			ObjectNode repo = objectMapper.createObjectNode();
+			repo.putObject("permissions").put("push", true);
+			respond(exchange, 200, repo);
+		});
+		github.start();
+		apiProperties = github.apiProperties();
+		writeProperties = new GitWriteProperties();
+		writeProperties.setRetryBackoffMs(1);
+		meterRegistry = new SimpleMeterRegistry();
+	}
+
+	@AfterEach
+	void stopStandIn() {
+		github.close();
+	}
+
+	@Test
+	void staleShaIsRefetchedAndRetried() {
+		content = "v0";
+		foreignCommits.set(2);
+
+		ResponseEntity<?> response = controller(new PathLockService(writeProperties)).performOperation(
+				request("mine"), null, session());
+
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals("mine", content);
+		assertEquals(2.0, meterRegistry.counter("github.write.sha.retries").count());
+		assertEquals(0.0, meterRegistry.counter("github.write.sha.retries.exhausted").count());
+	}
+
+	@Test
+	void fileCreatedBetweenLookupAndAddIsRetriedAsUpdate() {
+		// The first lookup sees no file; another node creates it before our add, which GitHub answers with 422.
+		foreignCommits.set(1);
+
+		ResponseEntity<?> response = controller(new PathLockService(writeProperties)).performOperation(
+				request("mine"), null, session());
+
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals("mine", content);
+		assertEquals(1.0, meterRegistry.counter("github.write.sha.retries").count());
+	}
+
+	@Test
+	void persistentConflictGivesUpWith409() {
+		content = "v0";
+		foreignCommits.set(Integer.MAX_VALUE);
+
+		ResponseEntity<?> response = controller(new PathLockService(writeProperties)).performOperation(
+				request("mine"), null, session());
+
+		assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+		assertEquals(writeProperties.getMaxShaRetries(), meterRegistry.counter("github.write.sha.retries").count());
+		assertEquals(1.0, meterRegistry.counter("github.write.sha.retries.exhausted").count());
+		assertEquals(0, commits.get());
+	}
+
+	@Test
+	void concurrentWritersOnTwoNodesAllCommit() throws Exception {
+		writeProperties.setMaxShaRetries(100);
+		// Two nodes: writers on one node are serialised by its path lock, across nodes only the SHA check protects them.
+		List<GitOperationsController> nodes = List.of(controller(new PathLockService(writeProperties)),
+				controller(new PathLockService(writeProperties)));
+		int writers = 20;
+		ExecutorService clients = Executors.newFixedThreadPool(writers);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<ResponseEntity<?>>> results = new ArrayList<>();
+		for (int i = 0; i < writers; i++) {
+			GitOperationsController node = nodes.get(i % 2);
+			GitOperationRequest request = request("writer" + i);
+			results.add(clients.submit(() -> {
+				start.await();
+				return node.performOperation(request, null, session());
+			}));
+		}
+		start.countDown();
+		for (Future<ResponseEntity<?>> result : results) {
+			assertEquals(HttpStatus.OK, result.get(60, TimeUnit.SECONDS).getStatusCode());
+		}
+		clients.shutdown();
+		// Every write landed on top of the previous one: none was accepted against a stale SHA.
+		assertEquals(writers, commits.get());
+		assertEquals(writers, version);
+	}
+
+	@Test
+	void burstOfFeedRegistrationsIsAdmittedByTheFeedListBulkhead() throws Exception {
+		// 100 simultaneous registrations exceed the default pushFile bulkhead (20 in flight + 20 queued);
+		// the feeds.lst bulkhead admits 50 at a time, each detecting the SOR structure against the stand-in,
+		// and FeedListAggregator folds them into a few commits.
+		PathLockService pathLockService = new PathLockService(writeProperties);
+		FeedListAggregator aggregator = new FeedListAggregator(new GithubContentService(apiProperties),
+				pathLockService, new ShaRetryService(writeProperties, meterRegistry), new FeedListProperties(),
+				meterRegistry);
+		GitOperationsController controller = controller(pathLockService);
+		ReflectionTestUtils.setField(controller, "feedListAggregator", aggregator);
+		int feeds = 100;
+		ExecutorService clients = Executors.newFixedThreadPool(feeds);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<ResponseEntity<?>>> results = new ArrayList<>();
+		try {
+			for (int i = 0; i < feeds; i++) {
+				GitOperationRequest request = feedRegistration("feed" + i);
+				results.add(clients.submit(() -> {
+					start.await();
+					return controller.performOperation(request, null, session());
+				}));
+			}
+			start.countDown();
+			for (Future<ResponseEntity<?>> result : results) {
+				assertEquals(HttpStatus.OK, result.get(60, TimeUnit.SECONDS).getStatusCode());
+			}
+		} finally {
+			clients.shutdown();
+			aggregator.shutdown();
+		}
+
+		Set<String> registered = new HashSet<>(Arrays.asList(content.split("\n")));
+		for (int i = 0; i < feeds; i++) {
+			assertTrue(registered.contains("feed" + i), "feed" + i + " missing from feeds.lst");
+		}
+		assertTrue(commits.get() < feeds, "registrations should be coalesced, got " + commits.get() + " commits");
+		assertEquals(feeds, structureLookups.get());
+		assertTrue(meterRegistry.find("github.bulkhead.rejections").counters().isEmpty());
+		assertEquals(feeds, meterRegistry.timer("github.bulkhead.wait", "bulkhead", AdmissionControlService.FEED_LIST_BULKHEAD).count());
+	}
+
+	@Test
+	void missingOrUnknownOperationIs400() {
+		GitOperationsController controller = controller(new PathLockService(writeProperties));
+		GitOperationRequest missing = request("mine");
+		missing.setOperation(null);
+		GitOperationRequest unknown = request("mine");
+		unknown.setOperation("deleteRepository");
+
+		assertEquals(HttpStatus.BAD_REQUEST, controller.performOperation(missing, null, session()).getStatusCode());
+		assertEquals(HttpStatus.BAD_REQUEST, controller.performOperation(unknown, null, session()).getStatusCode());
+		assertEquals(0, commits.get());
+	}
+
+	private GitOperationsController controller(PathLockService pathLockService) {
+		GitOperationsController controller = new GitOperationsController();
+		ReflectionTestUtils.setField(controller, "pathConstructorService", new PathConstructorService(apiProperties));
+		ReflectionTestUtils.setField(controller, "pathLockService", pathLockService);
+		ReflectionTestUtils.setField(controller, "shaRetryService", new ShaRetryService(writeProperties, meterRegistry));
+		ReflectionTestUtils.setField(controller, "githubApiProperties", apiProperties);
+		ReflectionTestUtils.setField(controller, "mirrorProperties", new MirrorProperties());
+		ReflectionTestUtils.setField(controller, "admissionControlService",
+				new AdmissionControlService(new AdmissionProperties(), meterRegistry));
+		return controller;
+	}
+
+	private static MockHttpSession session() {
+		MockHttpSession session = new MockHttpSession();
+		session.setAttribute("GHE_ACCESS_TOKEN", "token");
+		return session;
+	}
+
+	private static GitOperationRequest request(String text) {
+		GitOperationRequest request = new GitOperationRequest();
+		request.setOperation("pushFile");
+		request.setOwner("acme");
+		request.setRepo("feeds");
+		request.setNewBranch("dev");
+		request.setSor("sor1");
+		request.setFeedName("feed1");
+		request.setFileType("json");
+		request.setCommitMessage("Update feed1");
+		request.setContent(Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8)));
+		return request;
+	}
+
+	private static GitOperationRequest feedRegistration(String feed) {
+		GitOperationRequest request = request(feed);
+		request.setFeedName(feed);
+		request.setFileType("lst");
+		request.setCommitMessage("Register " + feed);
+		return request;
+	}
+
+	private synchronized void handleContents(HttpExchange exchange) throws IOException {
+		if (exchange.getRequestURI().getPath().endsWith("/contents/" + SOR_DIRECTORY)) {
+			// Structure detection: sor1 uses the Type 1 layout.
+			structureLookups.incrementAndGet();
+			ArrayNode entries = objectMapper.createArrayNode();
+			entries.addObject().put("name", "config");
+			respond(exchange, 200, entries);
+			return;
+		}
+		if ("GET".equals(exchange.getRequestMethod())) {
+			if (content == null) {
+				respond(exchange, 404, objectMapper.createObjectNode().put("message", "Not Found"));
+				return;
+			}
+			ObjectNode file = objectMapper.createObjectNode();
+			file.put("sha", "sha-" + version);
+			file.put("content", Base64.getMimeEncoder().encodeToString(content.getBytes(StandardCharsets.UTF_8)));
+			respond(exchange, 200, file);
+			return;
+		}
+		if (foreignCommits.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+			content = "foreign";
+			version++;
+		}
+		JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+		String expectedSha = content == null ? null : "sha-" + version;
+		String sentSha = body.hasNonNull("sha") ? body.get("sha").asText() : null;
+		if (expectedSha != null && sentSha == null) {
+			respond(exchange, 422, objectMapper.createObjectNode().put("message", "Invalid request.\n\n\"sha\" wasn't supplied."));
+			return;
+		}
+		if (expectedSha != null && !expectedSha.equals(sentSha)) {
+			respond(exchange, 409, objectMapper.createObjectNode().put("message", PATH + " does not match " + sentSha));
+			return;
+		}
+		content = new String(Base64.getMimeDecoder().decode(body.get("content").asText()), StandardCharsets.UTF_8);
+		version++;
+		commits.incrementAndGet();
+		respond(exchange, 200, objectMapper.createObjectNode().put("commit", "c" + version));
+	}
+}
@@ -0,0 +1,138 @@
+package com.wellsfargo.utcap.service;
+
+import com.wellsfargo.utcap.model.AdmissionProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControlServiceTest {
+
+	@Test
+	void limitGrowsWithFastCallsAndBacksOffOnSlowOnes() {
+		AdaptiveBulkhead bulkhead = new AdaptiveBulkhead(10, 2, 100, 0, 100, 0.5);
+		for (int i = 0; i < 50; i++) {
+			assertEquals(AdaptiveBulkhead.Admission.ADMITTED, bulkhead.acquire(0));
+			bulkhead.release(TimeUnit.MILLISECONDS.toNanos(10), false);
+		}
+		int grown = bulkhead.limit();
+		assertTrue(grown > 10, "limit should grow under fast calls, was " + grown);
+
+		bulkhead.acquire(0);
+		bulkhead.release(TimeUnit.MILLISECONDS.toNanos(500), false);
+		assertEquals(grown / 2, bulkhead.limit(), 1);
+		// A second slow call within the same latency target does not halve the limit again.
+		bulkhead.acquire(0);
+		bulkhead.release(0, true);
+		assertEquals(grown / 2, bulkhead.limit(), 1);
+	}
+
+	@Test
+	void rejectsWhenSlotsAndQueueAreTaken() {
+		AdaptiveBulkhead bulkhead = new AdaptiveBulkhead(2, 2, 2, 0, 1000, 0.5);
+		assertEquals(AdaptiveBulkhead.Admission.ADMITTED, bulkhead.acquire(0));
+		assertEquals(AdaptiveBulkhead.Admission.ADMITTED, bulkhead.acquire(0));
+		assertEquals(AdaptiveBulkhead.Admission.QUEUE_FULL, bulkhead.acquire(0));
+
+		AdaptiveBulkhead queueing = new AdaptiveBulkhead(1, 1, 1, 1, 1000, 0.5);
+		queueing.acquire(0);
+		assertEquals(AdaptiveBulkhead.Admission.TIMED_OUT, queueing.acquire(TimeUnit.MILLISECONDS.toNanos(20)));
+	}
+
+	@Test
+	void saturatedBulkheadAnswers503WithRetryAfter() throws Exception {
+		AdmissionProperties properties = new AdmissionProperties();
+		properties.setInitialLimit(1);
+		properties.setMinLimit(1);
+		properties.setMaxLimit(1);
+		properties.setMaxQueue(0);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		AdmissionControlService service = new AdmissionControlService(properties, meterRegistry);
+
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService slowCaller = Executors.newSingleThreadExecutor();
+		slowCaller.submit(() -> service.call("branches", () -> {
+			entered.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return ResponseEntity.ok("slow");
+		}));
+		assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+		ResponseEntity<?> rejected = service.call("branches", () -> ResponseEntity.ok("fast"));
+		ResponseEntity<?> otherBulkhead = service.call("repositories", () -> ResponseEntity.ok("fast"));
+		release.countDown();
+		slowCaller.shutdown();
+
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatusCode());
+		assertEquals("2", rejected.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+		assertEquals("fast", otherBulkhead.getBody());
+		assertEquals(1, meterRegistry.counter("github.bulkhead.rejections", "bulkhead", "branches",
+				"reason", "queue_full").count());
+	}
+
+	@Test
+	void localWaitsAreLeftOutOfTheLatency() {
+		AdmissionProperties properties = new AdmissionProperties();
+		properties.setInitialLimit(10);
+		properties.setLatencyTargetMs(50);
+		properties.setBackoffRatio(0.5);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		AdmissionControlService service = new AdmissionControlService(properties, meterRegistry);
+
+		service.call("lock-wait", () -> {
+			long started = System.nanoTime();
+			sleep(200);
+			AdmissionControlService.excludeFromLatency(System.nanoTime() - started);
+			return ResponseEntity.ok("written");
+		});
+		service.call("slow-github", () -> {
+			sleep(200);
+			return ResponseEntity.ok("written");
+		});
+
+		assertEquals(10, meterRegistry.get("github.bulkhead.limit").tag("bulkhead", "lock-wait").gauge().value());
+		assertEquals(5, meterRegistry.get("github.bulkhead.limit").tag("bulkhead", "slow-github").gauge().value());
+	}
+
+	@Test
+	void feedListBulkheadHasAFixedLimit() {
+		AdmissionProperties properties = new AdmissionProperties();
+		properties.setFeedListLimit(3);
+		properties.setLatencyTargetMs(1);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		AdmissionControlService service = new AdmissionControlService(properties, meterRegistry);
+
+		service.call(AdmissionControlService.FEED_LIST_BULKHEAD, () -> {
+			// Waiting for the coalesced batch is far slower than the latency target.
+			sleep(20);
+			return ResponseEntity.ok("registered");
+		});
+
+		assertEquals(3, meterRegistry.get("github.bulkhead.limit")
+				.tag("bulkhead", AdmissionControlService.FEED_LIST_BULKHEAD).gauge().value());
+		assertEquals(5000, service.queueTimeoutMs(AdmissionControlService.FEED_LIST_BULKHEAD));
+		assertEquals(500, service.queueTimeoutMs("branches"));
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
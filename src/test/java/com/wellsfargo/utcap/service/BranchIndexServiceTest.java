@@ -0,0 +1,157 @@
+package com.wellsfargo.utcap.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.wellsfargo.utcap.GithubStandIn;
+import com.wellsfargo.utcap.dto.BranchPage;
+import com.wellsfargo.utcap.model.BranchIndexProperties;
+import com.wellsfargo.utcap.model.GithubApiProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.wellsfargo.utcap.GithubStandIn.respond;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the branch index against a local stand-in for a private repository that only the token
+ * "member" can see; the branch listing hangs until the test releases it. The listing answers with
+ * the branches the repository had when the request arrived.
+ */
+class BranchIndexServiceTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final List<String> remoteBranches = new CopyOnWriteArrayList<>(List.of("main", "secret-feature"));
+	private final AtomicInteger listings = new AtomicInteger();
+	private final BranchIndexProperties indexProperties = new BranchIndexProperties();
+	private volatile CountDownLatch listingStarted = new CountDownLatch(1);
+	private volatile CountDownLatch releaseListing = new CountDownLatch(1);
+	private GithubStandIn github;
+	private BranchIndexService service;
+
+	@BeforeEach
+	void startStandIn() throws IOException {
+		github = new GithubStandIn(4);
+		github.handle("/repos/acme/private", exchange -> {
+			if (!"token member".equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+				respond(exchange, 404, "{\"message\":\"Not Found\"}");
+				return;
+			}
+			if (exchange.getRequestURI().getPath().endsWith("/branches")) {
+				listings.incrementAndGet();
+				ArrayNode branches = objectMapper.createArrayNode();
+				remoteBranches.forEach(name -> branches.addObject().put("name", name));
+				listingStarted.countDown();
+				try {
+					releaseListing.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				respond(exchange, 200, branches);
+				return;
+			}
+			respond(exchange, 200, "{\"name\":\"private\"}");
+		});
+		github.start();
+		GithubApiProperties apiProperties = github.apiProperties();
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		service = new BranchIndexService(new RestRepositoryBackend(apiProperties, meterRegistry), apiProperties,
+				indexProperties, meterRegistry);
+	}
+
+	@AfterEach
+	void stopStandIn() {
+		releaseListing.countDown();
+		service.shutdown();
+		github.close();
+	}
+
+	@Test
+	void callerWaitingOnAnotherLoadStillNeedsAccess() throws Exception {
+		ExecutorService callers = Executors.newFixedThreadPool(2);
+		try {
+			Future<BranchPage> member = callers.submit(() -> search("member"));
+			listingStarted.await(10, TimeUnit.SECONDS);
+			Future<BranchPage> outsider = callers.submit(() -> search("outsider"));
+			// Let the outsider block on the index being loaded for the member.
+			Thread.sleep(200);
+			releaseListing.countDown();
+
+			assertEquals(List.of("main", "secret-feature"), member.get(10, TimeUnit.SECONDS).getItems());
+			ExecutionException denied = assertThrows(ExecutionException.class, () -> outsider.get(10, TimeUnit.SECONDS));
+			assertEquals(HttpStatus.NOT_FOUND, ((HttpClientErrorException) denied.getCause()).getStatusCode());
+		} finally {
+			callers.shutdownNow();
+		}
+	}
+
+	@Test
+	void loadedIndexIsNotServedToOutsiders() throws IOException {
+		releaseListing.countDown();
+		assertFalse(search("member").getItems().isEmpty());
+
+		HttpClientErrorException denied = assertThrows(HttpClientErrorException.class, () -> search("outsider"));
+		assertEquals(HttpStatus.NOT_FOUND, denied.getStatusCode());
+	}
+
+	@Test
+	void branchEventsUpdateTheIndexWithoutReloading() throws IOException {
+		releaseListing.countDown();
+		assertEquals(List.of("main", "secret-feature"), search("member").getItems());
+
+		service.branchCreated("acme", "private", "feature-x");
+		service.branchDeleted("acme", "private", "secret-feature");
+
+		assertEquals(List.of("feature-x", "main"), search("member").getItems());
+		assertEquals(1, listings.get());
+	}
+
+	@Test
+	void reconcileKeepsEventsThatArriveWhileItLoads() throws Exception {
+		indexProperties.setReconcileSeconds(0);
+		releaseListing.countDown();
+		assertEquals(List.of("main", "secret-feature"), search("member").getItems());
+
+		// Changed outside the service: only the reconcile can find it.
+		remoteBranches.add("added-elsewhere");
+		listingStarted = new CountDownLatch(1);
+		releaseListing = new CountDownLatch(1);
+		assertEquals(List.of("main", "secret-feature"), search("member").getItems());
+		listingStarted.await(10, TimeUnit.SECONDS);
+
+		// Created after the reconcile's listing was taken.
+		remoteBranches.add("feature-x");
+		service.branchCreated("acme", "private", "feature-x");
+		releaseListing.countDown();
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		List<String> items = search("member").getItems();
+		while (!items.contains("added-elsewhere") && System.nanoTime() < deadline) {
+			Thread.sleep(20);
+			items = search("member").getItems();
+		}
+		assertTrue(items.contains("added-elsewhere"), "reconcile did not finish: " + items);
+		assertEquals(List.of("added-elsewhere", "feature-x", "main", "secret-feature"), items);
+	}
+
+	private BranchPage search(String token) throws IOException {
+		return service.search(token, "acme", "private", "", false, null, null);
+	}
+}
@@ -0,0 +1,75 @@
+package com.wellsfargo.utcap.service;
+
+import com.wellsfargo.utcap.dto.BranchPage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BranchIndexTest {
+
+	@Test
+	void prefixSearchPagesThroughMatchesWithCursor() {
+		BranchIndex index = BranchIndex.of(branches(20_000));
+
+		BranchPage first = index.search("feature/JIRA-12", false, null, 5);
+		assertEquals(List.of("feature/jira-12", "feature/jira-120", "feature/jira-1200",
+				"feature/jira-12000", "feature/jira-12001"), first.getItems());
+
+		BranchPage second = index.search("feature/jira-12", false, first.getNextCursor(), 5);
+		assertEquals("feature/jira-12002", second.getItems().get(0));
+
+		List<String> all = new ArrayList<>();
+		String cursor = null;
+		do {
+			BranchPage page = index.search("feature/jira-12", false, cursor, 100);
+			all.addAll(page.getItems());
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		assertEquals(1111, all.size());
+	}
+
+	@Test
+	void substringSearchIsCaseInsensitive() {
+		BranchIndex index = BranchIndex.of(List.of("main", "release/2024.1", "Hotfix/LOGIN", "feature/login-page"));
+
+		BranchPage page = index.search("login", true, null, 10);
+		assertEquals(List.of("feature/login-page", "Hotfix/LOGIN"), page.getItems());
+		assertNull(page.getNextCursor());
+	}
+
+	@Test
+	void createdBranchIsVisibleWithoutReload() {
+		BranchIndex index = BranchIndex.of(List.of("main", "develop"));
+		BranchIndex updated = index.with("feature/new-feed");
+
+		assertEquals(2, index.size());
+		assertEquals(3, updated.size());
+		assertTrue(updated.search("feat", false, null, 10).getItems().contains("feature/new-feed"));
+		assertEquals(updated, updated.with("main"));
+	}
+
+	@Test
+	void deletedBranchDisappearsWithoutReload() {
+		BranchIndex index = BranchIndex.of(List.of("main", "develop", "feature/old"));
+		BranchIndex updated = index.without("feature/old");
+
+		assertEquals(3, index.size());
+		assertEquals(List.of("develop", "main"), updated.search("", false, null, 10).getItems());
+		assertEquals(updated, updated.without("feature/old"));
+	}
+
+	private static List<String> branches(int count) {
+		List<String> names = new ArrayList<>(count + 1);
+		names.add("main");
+		for (int i = 0; i < count; i++) {
+			names.add("feature/jira-" + i);
+		}
+		return names;
+	}
+
+}
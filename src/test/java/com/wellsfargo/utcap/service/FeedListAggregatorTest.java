@@ -0,0 +1,310 @@
+package com.wellsfargo.utcap.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.wellsfargo.utcap.GithubStandIn;
+import com.wellsfargo.utcap.dto.GitOperationRequest;
+import com.wellsfargo.utcap.model.FeedListProperties;
+import com.wellsfargo.utcap.model.GitWriteProperties;
+import com.wellsfargo.utcap.model.GithubApiProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import static com.wellsfargo.utcap.GithubStandIn.respond;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives 100 concurrent feed registrations from several sessions against a local stand-in for the
+ * Contents API, which adds a fixed latency per call and enforces SHA matching like GitHub does.
+ * The token "reader" has no push access to the repository. A second repository, acme/slow, does not
+ * answer content reads until the test releases it.
+ */
+class FeedListAggregatorTest {
+
+	private static final String PATH = "src/batch/sor1/config/feeds.lst";
+	private static final int FEEDS = 100;
+	private static final long LATENCY_MS = 10;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final AtomicInteger puts = new AtomicInteger();
+	// Number of upcoming PUTs answered with 409 as if another writer had committed first.
+	private final AtomicInteger conflicts = new AtomicInteger();
+	private final CountDownLatch slowRepository = new CountDownLatch(1);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private GithubStandIn github;
+	private GithubApiProperties apiProperties;
+	private volatile String content;
+	private volatile int version;
+
+	@BeforeEach
+	void startStandIn() throws IOException {
+		github = new GithubStandIn(16);
+		github.handle("/repos/acme/feeds/contents/", this::handleContents);
+		github.handle("/repos/acme/", exchange -> {
+			boolean push = !"token reader".equals(exchange.getRequestHeaders().getFirst("Authorization"));
+			ObjectNode repo = objectMapper.createObjectNode();
+			repo.putObject("permissions").put("push", push);
+			respond(exchange, 200, repo);
+		});
+		github.handle("/repos/acme/slow/contents/", exchange -> {
+			try {
+				slowRepository.await(30, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			respond(exchange, 404, objectMapper.createObjectNode().put("message", "Not Found"));
+		});
+		github.start();
+		apiProperties = github.apiProperties();
+	}
+
+	@AfterEach
+	void stopStandIn() {
+		slowRepository.countDown();
+		github.close();
+	}
+
+	@Test
+	void mergeKeepsExistingOrderAndDropsDuplicates() {
+		List<String> merged = new ArrayList<>();
+		int added = FeedListAggregator.mergeLines("feedB\nfeedA\n\nfeedA\n", List.of("feedA", "feedC", "feedC"), merged);
+		assertEquals(1, added);
+		assertEquals(List.of("feedB", "feedA", "feedC"), merged);
+	}
+
+	@Test
+	void concurrentRegistrationsAreCoalesced() throws Exception {
+		FeedListProperties feedProperties = new FeedListProperties();
+		feedProperties.setCoalesceWindowMs(100);
+		GitWriteProperties writeProperties = new GitWriteProperties();
+		FeedListAggregator aggregator = aggregator(feedProperties);
+
+		long coalescedMillis;
+		try {
+			// Registrations come from four different sessions and still share commits.
+			coalescedMillis = runConcurrently(feed -> aggregator.register("session" + Math.floorMod(feed.hashCode(), 4), request(feed)));
+		} finally {
+			aggregator.shutdown();
+		}
+		int coalescedPuts = puts.get();
+		assertAllFeedsRegistered();
+
+		// Baseline: every registration rewrites feeds.lst on its own, as a plain pushFile would.
+		content = null;
+		puts.set(0);
+		GithubContentService contents = new GithubContentService(apiProperties);
+		PathLockService locks = new PathLockService(writeProperties);
+		long separateMillis = runConcurrently(feed -> {
+			Lock lock = locks.lockFor("acme", "feeds", "dev", PATH);
+			lock.lock();
+			try {
+				GithubContentService.FileContent current = contents.getFile("token", "acme", "feeds", "dev", PATH);
+				String existing = current == null ? "" : current.getContent();
+				contents.putFile("token", "acme", "feeds", "dev", PATH, "Register " + feed,
+						encode(existing + feed + "\n"), current == null ? null : current.getSha());
+			} finally {
+				lock.unlock();
+			}
+		});
+		int separatePuts = puts.get();
+		assertAllFeedsRegistered();
+
+		assertEquals(FEEDS, separatePuts);
+		assertTrue(coalescedPuts <= 10, "expected registrations to share commits, got " + coalescedPuts);
+		assertTrue(coalescedMillis < separateMillis, String.format("coalesced took %d ms for %d commits, separate %d ms for %d commits",
+				coalescedMillis, coalescedPuts, separateMillis, separatePuts));
+	}
+
+	@Test
+	void registrationWithoutPushAccessIsRejected() throws Exception {
+		FeedListAggregator aggregator = aggregator(new FeedListProperties());
+		ExecutorService clients = Executors.newFixedThreadPool(2);
+		try {
+			Future<String> reader = clients.submit(() -> aggregator.register("reader", request("feedX")));
+			Future<String> writer = clients.submit(() -> aggregator.register("writer", request("feedY")));
+
+			ExecutionException rejected = assertThrows(ExecutionException.class, () -> reader.get(10, TimeUnit.SECONDS));
+			assertEquals(HttpStatus.FORBIDDEN, ((HttpClientErrorException) rejected.getCause()).getStatusCode());
+			writer.get(10, TimeUnit.SECONDS);
+		} finally {
+			clients.shutdown();
+			aggregator.shutdown();
+		}
+		assertEquals("feedY\n", content);
+	}
+
+	@Test
+	void waitingIsBounded() {
+		FeedListProperties feedProperties = new FeedListProperties();
+		feedProperties.setCoalesceWindowMs(60_000);
+		feedProperties.setMaxWaitMs(100);
+		FeedListAggregator aggregator = aggregator(feedProperties);
+		try {
+			assertThrows(IOException.class, () -> aggregator.register("token", request("feed1")));
+		} finally {
+			aggregator.shutdown();
+		}
+	}
+
+	@Test
+	void shaConflictsAreRetriedAndCounted() throws Exception {
+		conflicts.set(2);
+		FeedListAggregator aggregator = aggregator(new FeedListProperties());
+		try {
+			aggregator.register("token", request("feed1"));
+		} finally {
+			aggregator.shutdown();
+		}
+		assertEquals("feed1\n", content);
+		assertEquals(2.0, meterRegistry.counter("github.write.sha.retries").count());
+		assertEquals(0.0, meterRegistry.counter("github.write.sha.retries.exhausted").count());
+	}
+
+	@Test
+	void slowRepositoryDoesNotHoldBackOtherBatches() throws Exception {
+		FeedListProperties feedProperties = new FeedListProperties();
+		feedProperties.setCoalesceWindowMs(10);
+		feedProperties.setFlushThreads(2);
+		FeedListAggregator aggregator = aggregator(feedProperties);
+		ExecutorService clients = Executors.newFixedThreadPool(3);
+		try {
+			// Two SORs of the slow repository: without per-branch flushing they would occupy both writer threads.
+			for (String sor : List.of("sor1", "sor2")) {
+				GitOperationRequest slow = request("feed-" + sor);
+				slow.setRepo("slow");
+				slow.setFilePath("src/batch/" + sor + "/config/feeds.lst");
+				clients.submit(() -> aggregator.register("token", slow));
+			}
+			Thread.sleep(100);
+
+			Future<String> other = clients.submit(() -> aggregator.register("token", request("feed1")));
+			other.get(10, TimeUnit.SECONDS);
+			assertEquals("feed1\n", content);
+		} finally {
+			slowRepository.countDown();
+			clients.shutdown();
+			aggregator.shutdown();
+		}
+	}
+
+	private FeedListAggregator aggregator(FeedListProperties feedProperties) {
+		GitWriteProperties writeProperties = new GitWriteProperties();
+		writeProperties.setRetryBackoffMs(1);
+		return new FeedListAggregator(new GithubContentService(apiProperties), new PathLockService(writeProperties),
+				new ShaRetryService(writeProperties, meterRegistry), feedProperties, meterRegistry);
+	}
+
+	private long runConcurrently(Registration registration) throws Exception {
+		ExecutorService clients = Executors.newFixedThreadPool(FEEDS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> results = new ArrayList<>();
+		for (int i = 0; i < FEEDS; i++) {
+			String feed = "feed" + i;
+			results.add(clients.submit(() -> {
+				start.await();
+				registration.register(feed);
+				return null;
+			}));
+		}
+		long started = System.nanoTime();
+		start.countDown();
+		for (Future<?> result : results) {
+			result.get(60, TimeUnit.SECONDS);
+		}
+		clients.shutdown();
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+	}
+
+	private void assertAllFeedsRegistered() {
+		Set<String> lines = new HashSet<>(Arrays.asList(content.split("\n")));
+		assertEquals(FEEDS, lines.size());
+		for (int i = 0; i < FEEDS; i++) {
+			assertTrue(lines.contains("feed" + i));
+		}
+	}
+
+	private GitOperationRequest request(String feed) {
+		GitOperationRequest request = new GitOperationRequest();
+		request.setOwner("acme");
+		request.setRepo("feeds");
+		request.setNewBranch("dev");
+		request.setFilePath(PATH);
+		request.setFeedName(feed);
+		request.setContent(encode(feed));
+		request.setCommitMessage("Register feeds");
+		return request;
+	}
+
+	private static String encode(String text) {
+		return Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private synchronized void handleContents(HttpExchange exchange) throws IOException {
+		try {
+			Thread.sleep(LATENCY_MS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if ("GET".equals(exchange.getRequestMethod())) {
+			if (content == null) {
+				respond(exchange, 404, objectMapper.createObjectNode().put("message", "Not Found"));
+				return;
+			}
+			ObjectNode file = objectMapper.createObjectNode();
+			file.put("sha", "sha-" + version);
+			file.put("content", Base64.getMimeEncoder().encodeToString(content.getBytes(StandardCharsets.UTF_8)));
+			respond(exchange, 200, file);
+			return;
+		}
+		JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+		if (conflicts.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+			respond(exchange, 409, objectMapper.createObjectNode().put("message", PATH + " does not match"));
+			return;
+		}
+		String expectedSha = content == null ? null : "sha-" + version;
+		String sentSha = body.hasNonNull("sha") ? body.get("sha").asText() : null;
+		if (expectedSha != null && sentSha == null) {
+			respond(exchange, 422, objectMapper.createObjectNode().put("message", "\"sha\" wasn't supplied."));
+			return;
+		}
+		if (expectedSha != null && !expectedSha.equals(sentSha)) {
+			respond(exchange, 409, objectMapper.createObjectNode().put("message", PATH + " does not match " + sentSha));
+			return;
+		}
+		content = new String(Base64.getMimeDecoder().decode(body.get("content").asText()), StandardCharsets.UTF_8);
+		version++;
+		puts.incrementAndGet();
+		respond(exchange, 200, objectMapper.createObjectNode().put("commit", "c" + version));
+	}
+
+	@FunctionalInterface
+	private interface Registration {
+		void register(String feed) throws Exception;
+	}
+
+}
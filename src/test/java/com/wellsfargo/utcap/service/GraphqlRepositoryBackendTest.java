@@ -0,0 +1,273 @@
+package com.wellsfargo.utcap.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.wellsfargo.utcap.GithubStandIn;
+import com.wellsfargo.utcap.model.GithubApiProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.wellsfargo.utcap.GithubStandIn.respond;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs both repository backends against a local stand-in for the GitHub REST and GraphQL APIs.
+ * Like GitHub, the REST stand-in serves 30 items per page unless per_page asks for more (up to 100).
+ * Every fifth repository has 150 branches, the others 3.
+ */
+class GraphqlRepositoryBackendTest {
+
+	private static final int REPO_COUNT = 150;
+	private static final int LARGE_BRANCH_COUNT = 150;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private GithubStandIn github;
+	private GithubApiProperties properties;
+
+	@BeforeEach
+	void startStandIn() throws IOException {
+		github = new GithubStandIn(4);
+		github.handle("/graphql", this::handleGraphql);
+		github.handle("/user/repos", exchange -> respond(exchange, restPage(exchange, restRepositories())));
+		github.handle("/repos/acme/", exchange -> {
+			String repo = exchange.getRequestURI().getPath().split("/")[3];
+			respond(exchange, restPage(exchange, restBranches(repo)));
+		});
+		github.start();
+
+		String base = github.baseUrl();
+		properties = new GithubApiProperties();
+		properties.setBaseUrl(base);
+		properties.setGraphqlUrl(base + "/graphql");
+		properties.setGraphqlPageSize(100);
+	}
+
+	@AfterEach
+	void stopStandIn() {
+		github.close();
+	}
+
+	@Test
+	void listsPushableRepositoriesAcrossPages() throws IOException {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		ArrayNode repos = new GraphqlRepositoryBackend(properties, registry).listRepositories("token");
+
+		// Every third repository is READ-only and must be filtered out.
+		assertEquals(REPO_COUNT - REPO_COUNT / 3, repos.size());
+		assertEquals("repo1", repos.get(0).get("name").asText());
+		assertEquals("acme", repos.get(0).get("owner").asText());
+		assertEquals(2.0, registry.counter("github.repository.calls",
+				"backend", "graphql", "operation", "repositories").count());
+	}
+
+	@Test
+	void listsBranchesAcrossPages() throws IOException {
+		ArrayNode branches = new GraphqlRepositoryBackend(properties, new SimpleMeterRegistry())
+				.listBranches("token", "acme", "feeds");
+
+		assertEquals(150, branches.size());
+		assertEquals("branch-0", branches.get(0).asText());
+		assertEquals("branch-149", branches.get(149).asText());
+	}
+
+	@Test
+	void restListsRepositoriesBeyondTheDefaultPage() throws IOException {
+		ArrayNode repos = new RestRepositoryBackend(properties, new SimpleMeterRegistry()).listRepositories("token");
+
+		assertEquals(REPO_COUNT - REPO_COUNT / 3, repos.size());
+		assertEquals("repo149", repos.get(repos.size() - 1).get("name").asText());
+	}
+
+	@Test
+	void graphqlListsTheSameRepositoriesAndBranchesWithFewerCallsAndBytes() throws IOException {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		Map<String, ArrayNode> viaRest = listEverything(new RestRepositoryBackend(properties, registry));
+		Map<String, ArrayNode> viaGraphql = listEverything(new GraphqlRepositoryBackend(properties, registry));
+
+		assertEquals(viaRest, viaGraphql);
+		assertEquals(REPO_COUNT - REPO_COUNT / 3, viaRest.size());
+
+		// REST: 2 pages of /user/repos, then /branches per repository (2 pages for the 20 large ones).
+		assertEquals(2 + 80 + 20 * 2, calls(registry, "rest"));
+		// GraphQL: 2 pages of repositories with their first 100 refs, then one more refs page per large repository.
+		assertEquals(2 + 20, calls(registry, "graphql"));
+
+		double graphqlBytes = bytes(registry, "graphql");
+		double restBytes = bytes(registry, "rest");
+		assertTrue(graphqlBytes * 5 < restBytes, String.format(
+				"GraphQL payload should be a fraction of the REST payload: graphql %.0f bytes, rest %.0f bytes",
+				graphqlBytes, restBytes));
+	}
+
+	/**
+	 * Lists the repositories and then the branches of each, as the UI does, keyed by "owner/name".
+	 */
+	private static Map<String, ArrayNode> listEverything(RepositoryBackend backend) throws IOException {
+		Map<String, ArrayNode> branchesByRepo = new LinkedHashMap<>();
+		for (JsonNode repo : backend.listRepositories("token")) {
+			String owner = repo.get("owner").asText();
+			String name = repo.get("name").asText();
+			branchesByRepo.put(owner + "/" + name, backend.listBranches("token", owner, name));
+		}
+		return branchesByRepo;
+	}
+
+	private static double calls(SimpleMeterRegistry registry, String backend) {
+		return registry.find("github.repository.calls").tag("backend", backend).counters().stream()
+				.mapToDouble(counter -> counter.count()).sum();
+	}
+
+	private static double bytes(SimpleMeterRegistry registry, String backend) {
+		return registry.find("github.repository.payload.bytes").tag("backend", backend).summaries().stream()
+				.mapToDouble(summary -> summary.totalAmount()).sum();
+	}
+
+	private static int branchCount(String repo) {
+		if (repo.startsWith("repo")) {
+			return Integer.parseInt(repo.substring("repo".length())) % 5 == 0 ? LARGE_BRANCH_COUNT : 3;
+		}
+		return LARGE_BRANCH_COUNT;
+	}
+
+	private void handleGraphql(HttpExchange exchange) throws IOException {
+		JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+		String query = request.get("query").asText();
+		JsonNode variables = request.get("variables");
+		int first = variables.get("first").asInt();
+		int offset = variables.get("cursor").isNull() ? 0 : Integer.parseInt(variables.get("cursor").asText());
+
+		ObjectNode data = objectMapper.createObjectNode();
+		if (query.contains("viewer")) {
+			ObjectNode connection = data.putObject("viewer").putObject("repositories");
+			ArrayNode nodes = connection.putArray("nodes");
+			int refs = variables.path("refs").asInt(0);
+			for (int i = offset; i < Math.min(REPO_COUNT, offset + first); i++) {
+				ObjectNode node = nodes.addObject();
+				node.put("name", "repo" + i);
+				node.putObject("owner").put("login", "acme");
+				node.put("viewerPermission", i % 3 == 0 ? "READ" : "WRITE");
+				if (refs > 0) {
+					refsPage(node.putObject("refs"), branchCount("repo" + i), 0, refs);
+				}
+			}
+			pageInfo(connection, REPO_COUNT, offset, first);
+		} else {
+			refsPage(data.putObject("repository").putObject("refs"), branchCount(variables.get("name").asText()), offset, first);
+		}
+
+		ObjectNode root = objectMapper.createObjectNode();
+		root.set("data", data);
+		respond(exchange, root);
+	}
+
+	private static void refsPage(ObjectNode connection, int total, int offset, int first) {
+		ArrayNode nodes = connection.putArray("nodes");
+		for (int i = offset; i < Math.min(total, offset + first); i++) {
+			nodes.addObject().put("name", "branch-" + i);
+		}
+		pageInfo(connection, total, offset, first);
+	}
+
+	private static void pageInfo(ObjectNode connection, int total, int offset, int first) {
+		ObjectNode pageInfo = connection.putObject("pageInfo");
+		pageInfo.put("hasNextPage", offset + first < total);
+		pageInfo.put("endCursor", String.valueOf(offset + first));
+	}
+
+	/**
+	 * Serves one page of a REST listing according to the per_page (default 30, max 100) and page parameters.
+	 */
+	private ArrayNode restPage(HttpExchange exchange, ArrayNode all) {
+		Map<String, String> parameters = new HashMap<>();
+		String query = exchange.getRequestURI().getQuery();
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				String[] pair = parameter.split("=", 2);
+				parameters.put(pair[0], pair.length > 1 ? pair[1] : "");
+			}
+		}
+		int perPage = Math.min(100, Integer.parseInt(parameters.getOrDefault("per_page", "30")));
+		int page = Integer.parseInt(parameters.getOrDefault("page", "1"));
+		ArrayNode result = objectMapper.createArrayNode();
+		for (int i = (page - 1) * perPage; i < Math.min(all.size(), page * perPage); i++) {
+			result.add(all.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * REST-shaped /repos/{owner}/{repo}/branches payload.
+	 */
+	private ArrayNode restBranches(String repo) {
+		ArrayNode branches = objectMapper.createArrayNode();
+		for (int i = 0; i < branchCount(repo); i++) {
+			ObjectNode branch = branches.addObject();
+			branch.put("name", "branch-" + i);
+			ObjectNode commit = branch.putObject("commit");
+			String sha = String.format("%040x", (long) repo.hashCode() * 1000 + i);
+			commit.put("sha", sha);
+			commit.put("url", "https://api.github.com/repos/acme/" + repo + "/commits/" + sha);
+			branch.put("protected", i == 0);
+		}
+		return branches;
+	}
+
+	/**
+	 * REST-shaped /user/repos payload with the fields GitHub returns for each repository.
+	 */
+	private ArrayNode restRepositories() {
+		ArrayNode repos = objectMapper.createArrayNode();
+		for (int i = 0; i < REPO_COUNT; i++) {
+			String fullName = "acme/repo" + i;
+			String apiUrl = "https://api.github.com/repos/" + fullName;
+			ObjectNode repo = repos.addObject();
+			repo.put("id", 100000 + i);
+			repo.put("node_id", "R_kgDOH" + i);
+			repo.put("name", "repo" + i);
+			repo.put("full_name", fullName);
+			repo.put("private", true);
+			ObjectNode owner = repo.putObject("owner");
+			owner.put("login", "acme");
+			owner.put("id", 42);
+			owner.put("avatar_url", "https://avatars.githubusercontent.com/u/42?v=4");
+			owner.put("url", "https://api.github.com/users/acme");
+			owner.put("html_url", "https://github.com/acme");
+			owner.put("repos_url", "https://api.github.com/users/acme/repos");
+			owner.put("type", "Organization");
+			repo.put("html_url", "https://github.com/" + fullName);
+			repo.put("description", "Batch feed definitions for repo" + i);
+			repo.put("url", apiUrl);
+			for (String link : new String[]{"forks", "keys", "collaborators", "teams", "hooks", "issue_events",
+					"events", "assignees", "branches", "tags", "blobs", "git_tags", "git_refs", "trees", "statuses",
+					"languages", "stargazers", "contributors", "subscribers", "subscription", "commits", "git_commits",
+					"comments", "issue_comment", "contents", "compare", "merges", "archive", "downloads", "issues",
+					"pulls", "milestones", "notifications", "labels", "releases", "deployments"}) {
+				repo.put(link + "_url", apiUrl + "/" + link);
+			}
+			repo.put("created_at", "2023-01-01T00:00:00Z");
+			repo.put("updated_at", "2024-06-01T00:00:00Z");
+			repo.put("pushed_at", "2024-06-01T00:00:00Z");
+			repo.put("default_branch", "main");
+			ObjectNode permissions = repo.putObject("permissions");
+			boolean push = i % 3 != 0;
+			permissions.put("admin", false);
+			permissions.put("maintain", false);
+			permissions.put("push", push);
+			permissions.put("triage", push);
+			permissions.put("pull", true);
+		}
+		return repos;
+	}
+
+}
@@ -0,0 +1,173 @@
+package com.wellsfargo.utcap.service;
+
+import com.wellsfargo.utcap.dto.GitOperationRequest;
+import com.wellsfargo.utcap.model.IdempotencyProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyServiceTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final IdempotencyService service = new IdempotencyService(new IdempotencyProperties(), meterRegistry);
+	private final AtomicInteger executions = new AtomicInteger();
+
+	@Test
+	void concurrentDuplicatesWaitForTheFirstExecution() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Supplier<ResponseEntity<?>> slowCommit = () -> {
+			executions.incrementAndGet();
+			started.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return ResponseEntity.ok("commit-1");
+		};
+		ExecutorService clients = Executors.newFixedThreadPool(8);
+		List<Future<ResponseEntity<?>>> responses = new ArrayList<>();
+		responses.add(clients.submit(() -> service.execute("token", "key-1", request("feature"), slowCommit)));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		// The first execution is now in flight, so every duplicate finds its entry.
+		for (int i = 0; i < 7; i++) {
+			responses.add(clients.submit(() -> service.execute("token", "key-1", request("feature"), slowCommit)));
+		}
+		release.countDown();
+		for (Future<ResponseEntity<?>> response : responses) {
+			assertEquals("commit-1", response.get(10, TimeUnit.SECONDS).getBody());
+		}
+		clients.shutdown();
+		assertEquals(1, executions.get());
+		double inFlightHits = meterRegistry.counter("github.idempotency.requests", "outcome", "in_flight_hit").count();
+		double hits = meterRegistry.counter("github.idempotency.requests", "outcome", "hit").count();
+		assertEquals(7, inFlightHits + hits);
+	}
+
+	@Test
+	void inFlightEntriesAreNotEvicted() throws Exception {
+		IdempotencyProperties properties = new IdempotencyProperties();
+		properties.setMaxEntries(1);
+		IdempotencyService small = new IdempotencyService(properties, meterRegistry);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService clients = Executors.newSingleThreadExecutor();
+		Future<ResponseEntity<?>> first = clients.submit(() -> small.execute("token", "key-1", request("feature"), () -> {
+			executions.incrementAndGet();
+			started.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return ResponseEntity.ok("commit-1");
+		}));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		small.execute("token", "key-2", request("hotfix"), () -> count(ResponseEntity.ok("commit-2")));
+		release.countDown();
+		assertEquals("commit-1", first.get(10, TimeUnit.SECONDS).getBody());
+		ResponseEntity<?> duplicate = small.execute("token", "key-1", request("feature"), () -> count(ResponseEntity.ok("commit-3")));
+		clients.shutdown();
+
+		assertEquals("commit-1", duplicate.getBody());
+		assertEquals(2, executions.get());
+	}
+
+	@Test
+	void duplicateWaitIsBoundedByTheCallersTimeout() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService clients = Executors.newSingleThreadExecutor();
+		Future<ResponseEntity<?>> first = clients.submit(() -> service.execute("token", "key-1", request("feature"), 500, () -> {
+			started.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return count(ResponseEntity.ok("commit-1"));
+		}));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		ResponseEntity<?> duplicate = service.execute("token", "key-1", request("feature"), 50,
+				() -> count(ResponseEntity.ok("commit-2")));
+		release.countDown();
+
+		assertEquals(HttpStatus.CONFLICT, duplicate.getStatusCode());
+		assertEquals("commit-1", first.get(10, TimeUnit.SECONDS).getBody());
+		clients.shutdown();
+		assertEquals(1, executions.get());
+		assertEquals(1, meterRegistry.counter("github.idempotency.requests", "outcome", "timeout").count());
+	}
+
+	@Test
+	void completedKeysReplayTheStoredResponse() {
+		service.execute("token", "key-1", request("feature"), () -> count(ResponseEntity.ok("commit-1")));
+		ResponseEntity<?> replay = service.execute("token", "key-1", request("feature"), () -> count(ResponseEntity.ok("commit-2")));
+
+		assertEquals("commit-1", replay.getBody());
+		assertEquals("true", replay.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+		assertEquals(1, executions.get());
+	}
+
+	@Test
+	void keysAreScopedToTheAccessToken() {
+		service.execute("token-a", "key-1", request("feature"), () -> count(ResponseEntity.ok("a")));
+		ResponseEntity<?> other = service.execute("token-b", "key-1", request("feature"), () -> count(ResponseEntity.ok("b")));
+
+		assertEquals("b", other.getBody());
+		assertNull(other.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+		assertEquals(2, executions.get());
+	}
+
+	@Test
+	void serverErrorsAreNotStored() {
+		service.execute("token", "key-1", request("feature"),
+				() -> count(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("failed")));
+		ResponseEntity<?> retry = service.execute("token", "key-1", request("feature"), () -> count(ResponseEntity.ok("commit-1")));
+
+		assertEquals("commit-1", retry.getBody());
+		assertEquals(2, executions.get());
+	}
+
+	@Test
+	void reusingAKeyForAnotherRequestIsRejected() {
+		service.execute("token", "key-1", request("feature"), () -> count(ResponseEntity.ok("commit-1")));
+		ResponseEntity<?> reused = service.execute("token", "key-1", request("hotfix"), () -> count(ResponseEntity.ok("commit-2")));
+
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, reused.getStatusCode());
+		assertEquals(1, executions.get());
+	}
+
+	private ResponseEntity<?> count(ResponseEntity<?> response) {
+		executions.incrementAndGet();
+		return response;
+	}
+
+	private static GitOperationRequest request(String branch) {
+		GitOperationRequest request = new GitOperationRequest();
+		request.setOperation("createBranch");
+		request.setOwner("acme");
+		request.setRepo("feeds");
+		request.setNewBranch(branch);
+		request.setBaseBranch("main");
+		return request;
+	}
+}
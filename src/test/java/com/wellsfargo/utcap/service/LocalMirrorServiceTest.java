@@ -0,0 +1,297 @@
+package com.wellsfargo.utcap.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.wellsfargo.utcap.GithubStandIn;
+import com.wellsfargo.utcap.model.BranchIndexProperties;
+import com.wellsfargo.utcap.model.MirrorProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the mirror backend against a bare repository on disk standing in for GitHub, with a local
+ * stand-in for the GitHub API that grants push access to every token except "reader". The login of
+ * a token is the part before any ':', so "alice:1" and "alice:2" are two tokens of the same user.
+ * The branch index only records the events the mirror reports to it.
+ */
+class LocalMirrorServiceTest {
+
+	private static final String FEEDS = "src/batch/sor1/config/feeds.lst";
+	private static final String FEED_C_CONFIG = "src/batch/sor1/config/feedC.cfg";
+
+	@TempDir
+	Path temp;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final List<String> indexEvents = new CopyOnWriteArrayList<>();
+	private File remote;
+	private File work;
+	private GithubStandIn github;
+	private MirrorProperties properties;
+	private GithubContentService contents;
+	private BranchIndexService branchIndex;
+	private LocalMirrorService mirrorService;
+
+	@BeforeEach
+	void createRemote() throws Exception {
+		remote = temp.resolve("remotes/acme/feeds.git").toFile();
+		Git.init().setBare(true).setInitialBranch("main").setDirectory(remote).call().close();
+
+		work = temp.resolve("work").toFile();
+		commitToRemote("feedA\n", "Initial");
+
+		github = new GithubStandIn(4);
+		github.handle("/repos/acme/feeds", exchange -> {
+			boolean push = !"token reader".equals(exchange.getRequestHeaders().getFirst("Authorization"));
+			ObjectNode repo = objectMapper.createObjectNode();
+			repo.putObject("permissions").put("push", push);
+			GithubStandIn.respond(exchange, repo);
+		});
+		github.handle("/user", exchange -> {
+			String token = exchange.getRequestHeaders().getFirst("Authorization").substring("token ".length());
+			GithubStandIn.respond(exchange, objectMapper.createObjectNode().put("login", token.split(":")[0]));
+		});
+		github.start();
+		contents = new GithubContentService(github.apiProperties());
+
+		branchIndex = new BranchIndexService(null, null, new BranchIndexProperties(), new SimpleMeterRegistry()) {
+			@Override
+			public void branchCreated(String owner, String repo, String branch) {
+				indexEvents.add("+" + owner + "/" + repo + ":" + branch);
+			}
+
+			@Override
+			public void branchDeleted(String owner, String repo, String branch) {
+				indexEvents.add("-" + owner + "/" + repo + ":" + branch);
+			}
+		};
+		properties = new MirrorProperties();
+		properties.setBaseDir(temp.resolve("mirrors").toString());
+		properties.setRemoteUrlTemplate(temp.resolve("remotes").toUri() + "{owner}/{repo}.git");
+		mirrorService = new LocalMirrorService(properties, contents, branchIndex, new SimpleMeterRegistry());
+	}
+
+	@AfterEach
+	void closeMirrors() {
+		mirrorService.close();
+		branchIndex.shutdown();
+		github.close();
+	}
+
+	@Test
+	void commitsStayLocalUntilPushedTogether() throws Exception {
+		mirrorService.createBranch("token", "acme", "feeds", "feature", "main");
+		mirrorService.pushFile("token", "acme", "feeds", "feature", FEEDS, encode("feedB\nfeedA"), "Register feedB", true);
+		mirrorService.pushFile("token", "acme", "feeds", "feature", "src/batch/sor1/config/feedB.cfg",
+				encode("name=feedB\n"), "Add feedB config", false);
+		assertNull(read("feature", FEEDS), "nothing should reach the remote before pushMirror");
+
+		mirrorService.mergeBranch("token", "acme", "feeds", "main", "feature", "Merge feature");
+		mirrorService.push("token", "acme", "feeds");
+
+		assertEquals("feedA\nfeedB\n", read("feature", FEEDS));
+		assertEquals("feedA\nfeedB\n", read("main", FEEDS));
+		assertEquals("name=feedB\n", read("main", "src/batch/sor1/config/feedB.cfg"));
+		assertEquals(List.of("config"), mirrorService.listDirectory("token", "acme", "feeds", "src/batch/sor1"));
+		assertNull(mirrorService.listDirectory("token", "acme", "feeds", "src/batch/missing"));
+	}
+
+	@Test
+	void rejectsRepositoryNamesOutsideTheMirrorDirectory() {
+		assertThrows(IllegalArgumentException.class,
+				() -> mirrorService.createBranch("token", "..", "feeds", "feature", "main"));
+	}
+
+	@Test
+	void callersWithoutPushAccessCannotUseTheMirror() {
+		HttpClientErrorException denied = assertThrows(HttpClientErrorException.class,
+				() -> mirrorService.createBranch("reader", "acme", "feeds", "feature", "main"));
+		assertEquals(HttpStatus.FORBIDDEN, denied.getStatusCode());
+		assertFalse(new File(temp.toFile(), "mirrors/acme/feeds.git").exists(), "no mirror should be cloned");
+	}
+
+	@Test
+	void unpushedCommitsAreVisibleOnlyToTheirAuthor() throws Exception {
+		mirrorService.createBranch("alice", "acme", "feeds", "alice-feature", "main");
+		mirrorService.pushFile("alice", "acme", "feeds", "alice-feature", FEEDS, encode("feedB"), "Register feedB", true);
+
+		assertThrows(IOException.class, () -> mirrorService.pushFile("bob", "acme", "feeds",
+				"alice-feature", FEEDS, encode("feedC"), "Register feedC", true));
+
+		mirrorService.createBranch("bob", "acme", "feeds", "bob-feature", "main");
+		mirrorService.pushFile("bob", "acme", "feeds", "bob-feature", FEEDS, encode("feedC"), "Register feedC", true);
+		mirrorService.push("bob", "acme", "feeds");
+		assertEquals("feedA\nfeedC\n", read("bob-feature", FEEDS));
+		assertNull(read("alice-feature", FEEDS), "bob's push must not publish alice's commits");
+
+		mirrorService.push("alice", "acme", "feeds");
+		assertEquals("feedA\nfeedB\n", read("alice-feature", FEEDS));
+	}
+
+	@Test
+	void unpushedWorkOnTheDefaultBranchDoesNotLockOthersOut() throws Exception {
+		mirrorService.pushFile("alice", "acme", "feeds", "main", FEEDS, encode("feedB"), "Register feedB", true);
+
+		mirrorService.pushFile("bob", "acme", "feeds", "main", FEED_C_CONFIG, encode("name=feedC\n"), "Add feedC config", false);
+		mirrorService.createBranch("bob", "acme", "feeds", "bob-feature", null);
+		mirrorService.push("bob", "acme", "feeds");
+		assertEquals("feedA\n", read("main", FEEDS), "alice's commit must stay local");
+		assertEquals("name=feedC\n", read("bob-feature", FEED_C_CONFIG));
+
+		// main moved on GitHub: alice's push is rejected, merged onto bob's commit and retried.
+		String summary = mirrorService.push("alice", "acme", "feeds");
+		assertTrue(summary.contains("\"merged\":true"), summary);
+		assertEquals("feedA\nfeedB\n", read("main", FEEDS));
+		assertEquals("name=feedC\n", read("main", FEED_C_CONFIG));
+	}
+
+	@Test
+	void conflictingPushKeepsTheCommitsUnderABackupRef() throws Exception {
+		mirrorService.pushFile("token", "acme", "feeds", "main", FEEDS, encode("feedB"), "Register feedB", true);
+		commitToRemote("feedA\nfeedC\n", "Register feedC elsewhere");
+
+		IllegalStateException conflict = assertThrows(IllegalStateException.class,
+				() -> mirrorService.push("token", "acme", "feeds"));
+		assertEquals("feedA\nfeedC\n", read("main", FEEDS));
+		String backupRef = conflict.getMessage().replaceAll("(?s).*kept at (\\S+)\\).*", "$1");
+		assertTrue(backupRef.startsWith("refs/utcap/backup/token/"), conflict.getMessage());
+		assertEquals("feedA\nfeedB\n", read(temp.resolve("mirrors/acme/feeds.git").toFile(), backupRef, FEEDS));
+
+		// The branch now builds on GitHub's state again.
+		mirrorService.pushFile("token", "acme", "feeds", "main", FEEDS, encode("feedB"), "Register feedB", true);
+		mirrorService.push("token", "acme", "feeds");
+		assertEquals("feedA\nfeedC\nfeedB\n", read("main", FEEDS));
+	}
+
+	@Test
+	void unpushedCommitsSurviveARestartAndANewToken() throws Exception {
+		properties.setFetchIntervalSeconds(0);
+		mirrorService.pushFile("alice:1", "acme", "feeds", "main", FEEDS, encode("feedB"), "Register feedB", true);
+		mirrorService.close();
+
+		// alice signs in again after the restart: her new token publishes the same commits.
+		mirrorService = new LocalMirrorService(properties, contents, branchIndex, new SimpleMeterRegistry());
+		mirrorService.push("alice:2", "acme", "feeds");
+		assertEquals("feedA\nfeedB\n", read("main", FEEDS));
+	}
+
+	@Test
+	void discardDropsOnlyTheCallersUnpushedCommits() throws Exception {
+		mirrorService.pushFile("alice", "acme", "feeds", "main", FEEDS, encode("feedB"), "Register feedB", true);
+		mirrorService.pushFile("bob", "acme", "feeds", "main", FEEDS, encode("feedC"), "Register feedC", true);
+
+		String discarded = mirrorService.discard("alice", "acme", "feeds", null);
+		assertTrue(discarded.contains("\"main\""), discarded);
+		mirrorService.push("alice", "acme", "feeds");
+		assertEquals("feedA\n", read("main", FEEDS));
+
+		mirrorService.push("bob", "acme", "feeds");
+		assertEquals("feedA\nfeedC\n", read("main", FEEDS));
+	}
+
+	@Test
+	void branchChangesAreReportedToTheIndex() throws Exception {
+		properties.setFetchIntervalSeconds(0);
+		mirrorService.createBranch("token", "acme", "feeds", "feature", "main");
+		mirrorService.push("token", "acme", "feeds");
+		assertTrue(indexEvents.contains("+acme/feeds:feature"), indexEvents.toString());
+
+		// Another client creates and later deletes a branch; the next fetches see both.
+		setRemoteBranch("hotfix", true);
+		mirrorService.listDirectory("token", "acme", "feeds", "src/batch/sor1");
+		setRemoteBranch("hotfix", false);
+		mirrorService.listDirectory("token", "acme", "feeds", "src/batch/sor1");
+		assertEquals(List.of("+acme/feeds:hotfix", "-acme/feeds:hotfix"),
+				indexEvents.stream().filter(event -> event.endsWith(":hotfix")).toList());
+	}
+
+	/**
+	 * Creates (at main's commit) or deletes a branch directly in the remote, as another client would.
+	 */
+	private void setRemoteBranch(String branch, boolean exists) throws Exception {
+		try (Repository repository = Git.open(remote).getRepository()) {
+			RefUpdate update = repository.updateRef(Constants.R_HEADS + branch);
+			update.setForceUpdate(true);
+			if (exists) {
+				update.setNewObjectId(repository.resolve(Constants.R_HEADS + "main"));
+				update.update();
+			} else {
+				update.delete();
+			}
+		}
+	}
+
+	/**
+	 * Commits feeds.lst with the given content directly to the remote's main branch, as another client would.
+	 */
+	private void commitToRemote(String feeds, String message) throws Exception {
+		boolean cloned = work.exists();
+		Git git = cloned ? Git.open(work)
+				: Git.cloneRepository().setURI(remote.toURI().toString()).setDirectory(work).call();
+		try (git) {
+			if (cloned) {
+				git.pull().call();
+			}
+			File file = new File(work, FEEDS);
+			file.getParentFile().mkdirs();
+			Files.writeString(file.toPath(), feeds);
+			git.add().addFilepattern(".").call();
+			git.commit().setMessage(message).setAuthor("test", "test@example.com")
+					.setCommitter("test", "test@example.com").call();
+			git.push().setRemote("origin").add("main").call();
+		}
+	}
+
+	private String read(String branch, String path) throws Exception {
+		return read(remote, Constants.R_HEADS + branch, path);
+	}
+
+	private String read(File gitDir, String ref, String path) throws Exception {
+		try (Repository repository = Git.open(gitDir).getRepository()) {
+			ObjectId head = repository.resolve(ref);
+			if (head == null) {
+				return null;
+			}
+			try (RevWalk walk = new RevWalk(repository)) {
+				RevCommit commit = walk.parseCommit(head);
+				try (TreeWalk treeWalk = TreeWalk.forPath(repository, path, commit.getTree())) {
+					assertNotNull(treeWalk, path + " missing on " + ref);
+					return new String(repository.open(treeWalk.getObjectId(0)).getBytes(), StandardCharsets.UTF_8);
+				}
+			}
+		}
+	}
+
+	private static String encode(String text) {
+		return Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,28 @@
+package com.wellsfargo.utcap.service;
+
+import com.wellsfargo.utcap.model.GitWriteProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PathLockServiceTest {
+
+	@Test
+	void sameFileOnSameBranchSharesLock() {
+		PathLockService service = new PathLockService(new GitWriteProperties());
+		assertSame(service.lockFor("acme", "feeds", "dev", "src/batch/sor1/config/feeds.lst"),
+				service.lockFor("acme", "feeds", "dev", "src/batch/sor1/config/feeds.lst"));
+	}
+
+	@Test
+	void stripeCountFollowsConfiguration() {
+		GitWriteProperties properties = new GitWriteProperties();
+		properties.setLockStripes(8);
+		assertEquals(8, new PathLockService(properties).getStripeCount());
+
+		properties.setLockStripes(0);
+		assertEquals(1, new PathLockService(properties).getStripeCount());
+	}
+
+}
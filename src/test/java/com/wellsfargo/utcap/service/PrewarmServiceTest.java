@@ -0,0 +1,188 @@
+package com.wellsfargo.utcap.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.wellsfargo.utcap.GithubStandIn;
+import com.wellsfargo.utcap.model.GithubApiProperties;
+import com.wellsfargo.utcap.model.PrewarmProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.wellsfargo.utcap.GithubStandIn.respond;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs PrewarmService over the REST repository backend against a local stand-in for the GitHub API.
+ * Requests made with the token "blocked" hang until the test releases them.
+ */
+class PrewarmServiceTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final AtomicInteger repositoryCalls = new AtomicInteger();
+	private final AtomicInteger branchCalls = new AtomicInteger();
+	private final AtomicInteger userCalls = new AtomicInteger();
+	private final CountDownLatch unblock = new CountDownLatch(1);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private GithubStandIn github;
+	private GithubApiProperties apiProperties;
+	private PrewarmProperties prewarmProperties;
+	private PrewarmService service;
+
+	@BeforeEach
+	void startStandIn() throws IOException {
+		github = new GithubStandIn(8);
+		github.handle("/user/repos", exchange -> {
+			repositoryCalls.incrementAndGet();
+			awaitIfBlocked(exchange);
+			ArrayNode repos = objectMapper.createArrayNode();
+			ObjectNode repo = repos.addObject().put("name", "feeds");
+			repo.putObject("owner").put("login", "acme");
+			repo.putObject("permissions").put("push", true);
+			respond(exchange, repos);
+		});
+		github.handle("/user", exchange -> {
+			userCalls.incrementAndGet();
+			respond(exchange, objectMapper.createObjectNode().put("login", "alice"));
+		});
+		github.handle("/repos/acme/feeds/branches", exchange -> {
+			branchCalls.incrementAndGet();
+			ArrayNode branches = objectMapper.createArrayNode();
+			branches.addObject().put("name", "main");
+			respond(exchange, branches);
+		});
+		github.start();
+		apiProperties = github.apiProperties();
+		prewarmProperties = new PrewarmProperties();
+	}
+
+	@AfterEach
+	void stopStandIn() {
+		unblock.countDown();
+		if (service != null) {
+			service.shutdown();
+		}
+		github.close();
+	}
+
+	@Test
+	void prewarmedRepositoriesAreHandedOutOnce() throws IOException {
+		service = newService();
+		service.prewarm("token");
+
+		assertEquals(1, service.listRepositories("token").size());
+		assertEquals(1, repositoryCalls.get());
+		assertEquals(1.0, lookups("repositories", "hit"));
+
+		// Later polls go to GitHub again.
+		service.listRepositories("token");
+		assertEquals(2, repositoryCalls.get());
+		assertEquals(1.0, lookups("repositories", "miss"));
+	}
+
+	@Test
+	void recentlyUsedRepositoriesGetTheirBranchesPrefetched() throws Exception {
+		service = newService();
+		service.prewarm("first-session");
+		awaitLoginResolved();
+		service.listBranches("first-session", "acme", "feeds");
+		assertEquals(1, branchCalls.get());
+
+		// The next login of the same user prefetches the branches of acme/feeds.
+		service.prewarm("second-session");
+		assertEquals(1, service.listBranches("second-session", "acme", "feeds").size());
+		assertEquals(2, branchCalls.get());
+		assertEquals(1.0, lookups("branches", "hit"));
+		assertEquals(1, meterRegistry.timer("github.prewarm.time.saved", "kind", "branches").count());
+	}
+
+	@Test
+	void rejectedPrewarmDoesNotDelayTheFirstListing() throws IOException {
+		prewarmProperties.setThreads(1);
+		prewarmProperties.setQueueCapacity(1);
+		prewarmProperties.setClaimWaitMs(30_000);
+		service = newService();
+		// Occupies the only worker with a hanging call and fills the queue with its branch prewarm.
+		service.prewarm("blocked");
+		service.prewarm("token");
+		assertEquals(1.0, meterRegistry.counter("github.prewarm.rejected").count());
+
+		long started = System.nanoTime();
+		assertEquals(1, service.listRepositories("token").size());
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 5_000,
+				"listing after a rejected prewarm should go straight to GitHub");
+		assertEquals(1.0, lookups("repositories", "miss"));
+	}
+
+	@Test
+	void slowPrefetchIsOnlyAwaitedBriefly() throws IOException {
+		prewarmProperties.setClaimWaitMs(100);
+		service = newService();
+		service.prewarm("blocked");
+
+		long started = System.nanoTime();
+		Thread release = new Thread(() -> {
+			try {
+				Thread.sleep(500);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			unblock.countDown();
+		});
+		release.start();
+		// The claim gives up after 100 ms; the caller's own call then completes once the stand-in is released.
+		service.listRepositories("blocked");
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+		assertTrue(elapsedMillis < 5_000, "claim should not wait for the prefetch TTL, took " + elapsedMillis + " ms");
+		assertEquals(1.0, lookups("repositories", "miss"));
+	}
+
+	@Test
+	void expiredPrefetchIsIgnored() throws IOException {
+		prewarmProperties.setTtlSeconds(0);
+		service = newService();
+		service.prewarm("token");
+
+		service.listRepositories("token");
+		assertEquals(1.0, lookups("repositories", "miss"));
+	}
+
+	private PrewarmService newService() {
+		return new PrewarmService(new RestRepositoryBackend(apiProperties, meterRegistry), apiProperties,
+				prewarmProperties, meterRegistry);
+	}
+
+	private double lookups(String kind, String result) {
+		return meterRegistry.counter("github.prewarm.lookups", "kind", kind, "result", result).count();
+	}
+
+	/**
+	 * The login is stored right after /user answers; give the worker a moment past that.
+	 */
+	private void awaitLoginResolved() throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (userCalls.get() == 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(200);
+	}
+
+	private void awaitIfBlocked(HttpExchange exchange) {
+		if ("token blocked".equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+			try {
+				unblock.await(30, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.wellsfargo.utcap.trace;
+
+import com.wellsfargo.utcap.GithubStandIn;
+import com.wellsfargo.utcap.model.GithubApiProperties;
+import com.wellsfargo.utcap.model.TraceProperties;
+import com.wellsfargo.utcap.service.GithubContentService;
+import com.wellsfargo.utcap.service.RestRepositoryBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs requests through TraceFilter and makes outbound GitHub calls inside them against a local
+ * stand-in that records the X-CORRELATION-ID header of every call.
+ */
+class TraceFilterTest {
+
+	private static final String HEADER = "X-CORRELATION-ID";
+
+	private final List<String> outboundIds = new CopyOnWriteArrayList<>();
+	private GithubStandIn github;
+	private GithubApiProperties apiProperties;
+	private TraceRecorder recorder;
+	private TraceFilter filter;
+
+	@BeforeEach
+	void startStandIn() throws IOException {
+		github = new GithubStandIn(4);
+		github.handle("/", exchange -> {
+			outboundIds.add(exchange.getRequestHeaders().getFirst(HEADER));
+			String body = exchange.getRequestURI().getPath().endsWith("/branches") ? "[{\"name\":\"main\"}]"
+					: exchange.getRequestURI().getPath().equals("/user/repos") ? "[]"
+					: "{\"sha\":\"abc\",\"content\":\"\"}";
+			GithubStandIn.respond(exchange, 200, body);
+		});
+		github.start();
+		apiProperties = github.apiProperties();
+		recorder = new TraceRecorder(new TraceProperties());
+		filter = new TraceFilter(recorder);
+	}
+
+	@AfterEach
+	void stopStandIn() {
+		github.close();
+	}
+
+	@Test
+	void reusesAValidIncomingIdAndEchoesIt() throws Exception {
+		MockHttpServletResponse response = run("client-id_42", new MockFilterChain());
+
+		assertEquals("client-id_42", response.getHeader(HEADER));
+		assertEquals("client-id_42", recorder.recent(1).get(0).getCorrelationId());
+	}
+
+	@Test
+	void replacesAnInvalidIncomingId() throws Exception {
+		String injected = "bad id\r\nX-Injected: 1";
+		MockHttpServletResponse response = run(injected, new MockFilterChain());
+
+		String used = response.getHeader(HEADER);
+		assertNotEquals(injected, used);
+		assertTrue(used.matches("[0-9a-f-]{36}"), used);
+	}
+
+	@Test
+	void everyOutboundCallOfOneRequestCarriesItsId() throws Exception {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		RestRepositoryBackend backend = new RestRepositoryBackend(apiProperties, meterRegistry);
+		GithubContentService contents = new GithubContentService(apiProperties);
+		FilterChain chain = (request, response) -> {
+			try {
+				backend.listRepositories("token");
+				backend.listBranches("token", "acme", "feeds");
+				contents.getFile("token", "acme", "feeds", "main", "src/batch/sor1/config/feeds.lst");
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		};
+
+		MockHttpServletResponse response = run(null, chain);
+
+		String correlationId = response.getHeader(HEADER);
+		assertEquals(3, outboundIds.size());
+		assertEquals(List.of(correlationId, correlationId, correlationId), outboundIds);
+		assertEquals(List.of("rest repositories", "rest branches"),
+				recorder.recent(1).get(0).getSpans().stream().map(SpanRecord::getName).toList());
+
+		// A second request gets its own ID, and calls outside any request do not reuse it.
+		run(null, chain);
+		assertNotEquals(correlationId, outboundIds.get(3));
+		backend.listRepositories("token");
+		assertNotEquals(outboundIds.get(3), outboundIds.get(6));
+	}
+
+	private MockHttpServletResponse run(String incomingId, FilterChain chain) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ghe/branches");
+		if (incomingId != null) {
+			request.addHeader(HEADER, incomingId);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, chain);
+		return response;
+	}
+}
@@ -0,0 +1,50 @@
+package com.wellsfargo.utcap.trace;
+
+import com.wellsfargo.utcap.model.TraceProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraceRecorderTest {
+
+	@Test
+	void returnsNewestFirst() {
+		TraceRecorder recorder = recorder(5);
+		record(recorder, 3);
+
+		assertEquals(List.of("id-2", "id-1", "id-0"), ids(recorder.recent(10)));
+		assertEquals(List.of("id-2", "id-1"), ids(recorder.recent(2)));
+	}
+
+	@Test
+	void keepsOnlyTheLastBufferSizeTracesAfterWrapping() {
+		TraceRecorder recorder = recorder(3);
+		record(recorder, 7);
+
+		assertEquals(List.of("id-6", "id-5", "id-4"), ids(recorder.recent(10)));
+	}
+
+	@Test
+	void emptyRecorderReturnsNothing() {
+		assertTrue(recorder(3).recent(10).isEmpty());
+	}
+
+	private static TraceRecorder recorder(int bufferSize) {
+		TraceProperties properties = new TraceProperties();
+		properties.setBufferSize(bufferSize);
+		return new TraceRecorder(properties);
+	}
+
+	private static void record(TraceRecorder recorder, int count) {
+		for (int i = 0; i < count; i++) {
+			recorder.record(new Trace("id-" + i, "GET", "/ghe/branches"));
+		}
+	}
+
+	private static List<String> ids(List<Trace> traces) {
+		return traces.stream().map(Trace::getCorrelationId).toList();
+	}
+}